@@ -2,7 +2,6 @@ package ch.laurinmurer.selecator;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.media.MediaScannerConnection;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -19,25 +18,25 @@ import androidx.recyclerview.widget.DividerItemDecoration;
 import com.google.android.material.snackbar.Snackbar;
 import com.obsez.android.lib.filechooser.ChooserDialog;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.FileAlreadyExistsException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import ch.laurinmurer.selecator.databinding.FragmentFirstBinding;
+import ch.laurinmurer.selecator.helper.FileTransferQueue;
+import ch.laurinmurer.selecator.helper.ImageMetadataStore;
+import ch.laurinmurer.selecator.helper.MediaScanNotifier;
 import ch.laurinmurer.selecator.helper.ScrollSynchronizer;
+import ch.laurinmurer.selecator.helper.ScrolledFromOtherSide;
 import ch.laurinmurer.selecator.helper.SwipeListener;
 
 public class FirstFragment extends Fragment {
@@ -47,6 +46,10 @@ public class FirstFragment extends Fragment {
 	private FirstFragmentSide fromSide;
 	private FirstFragmentSide toSide;
 	private final AtomicBoolean canFilesNowBeLoaded = new AtomicBoolean(false);
+	private FileTransferQueue transferQueue;
+	private MediaScanNotifier mediaScanNotifier;
+	private ScrollSynchronizer leftToRightScrollSynchronizer;
+	private ScrollSynchronizer rightToLeftScrollSynchronizer;
 
 	@Override
 	public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -63,68 +66,60 @@ public class FirstFragment extends Fragment {
 						.withChosenListener((path, pathFile) -> setToPath(pathFile, requireContext()))
 						.build().show()
 		);
+		Consumer<Runnable> onUiThreadRunner = requireActivity()::runOnUiThread;
+		transferQueue = new FileTransferQueue(onUiThreadRunner, new File(requireContext().getFilesDir(), "transfers"));
+		mediaScanNotifier = new MediaScanNotifier(requireContext());
+		MediaScanNotifier scanNotifierForResumedTransfers = mediaScanNotifier;
+		transferQueue.resumeInterruptedTransfers((source, target) ->
+				scanNotifierForResumedTransfers.notifyChanged(List.of(source.toString(), target.toString()))
+		);
 		List<Consumer<SelecatorRecyclerViewAdapter.Data>> leftToRightSwipedObserver = new ArrayList<>(1);
-		View.OnTouchListener leftToRightSwipeListener = new SwipeListener(true, binding.fromRecyclerView, v -> {
-			SelecatorRecyclerViewAdapter.Data imageData = fromSide.getImageDataForView((AppCompatImageView) v);
-			String fileName = imageData.imageFileName();
-			Path anImage = fromSide.getPath().resolve(fileName);
-			Path target = toSide.getPath().resolve(fileName);
-			boolean moveSuccessful = move(v, anImage, target);
-			if (moveSuccessful) {
-				SelecatorRecyclerViewAdapter.Data movedFile = toSide.loadImage(target.toFile());
-				fromSide.removeImage(imageData);
-				leftToRightSwipedObserver.forEach(observer -> observer.accept(movedFile));
-			}
-		});
+		View.OnTouchListener leftToRightSwipeListener = new SwipeListener(true, binding.fromRecyclerView, v ->
+				move(fromSide, toSide, fromSide.getImageDataForView((AppCompatImageView) v), leftToRightSwipedObserver)
+		);
 		List<Consumer<SelecatorRecyclerViewAdapter.Data>> rightToLeftSwipedObserver = new ArrayList<>(1);
-		View.OnTouchListener rightToLeftSwipeListener = new SwipeListener(false, binding.toRecyclerView, v -> {
-			SelecatorRecyclerViewAdapter.Data imageData = toSide.getImageDataForView((AppCompatImageView) v);
-			String fileName = imageData.imageFileName();
-			Path anImage = toSide.getPath().resolve(fileName);
-			Path target = fromSide.getPath().resolve(fileName);
-			boolean moveSuccessful = move(v, anImage, target);
-			if (moveSuccessful) {
-				SelecatorRecyclerViewAdapter.Data movedFile = fromSide.loadImage(target.toFile());
-				toSide.removeImage(imageData);
-				rightToLeftSwipedObserver.forEach(observer -> observer.accept(movedFile));
-			}
-		});
+		View.OnTouchListener rightToLeftSwipeListener = new SwipeListener(false, binding.toRecyclerView, v ->
+				move(toSide, fromSide, toSide.getImageDataForView((AppCompatImageView) v), rightToLeftSwipedObserver)
+		);
 
+		ImageMetadataStore metadataStore = new ImageMetadataStore(new File(requireContext().getCacheDir(), "metadata"));
 		AtomicReference<Path> fromPath = new AtomicReference<>();
-		SelecatorRecyclerViewAdapter fromSideRecyclerViewAdapter = new SelecatorRecyclerViewAdapter(requireContext(), binding.fromRecyclerView, leftToRightSwipeListener, requireActivity()::runOnUiThread, fromPath);
+		SelecatorRecyclerViewAdapter fromSideRecyclerViewAdapter = new SelecatorRecyclerViewAdapter(requireContext(), binding.fromRecyclerView, leftToRightSwipeListener, onUiThreadRunner, fromPath, metadataStore);
 		fromSide = new FirstFragmentSide("from",
 				binding.fromPath,
 				this::checkIntroductionStillNeeded,
 				canFilesNowBeLoaded,
 				fromPath,
-				fromSideRecyclerViewAdapter);
+				fromSideRecyclerViewAdapter,
+				metadataStore);
 		binding.fromRecyclerView.setAdapter(fromSideRecyclerViewAdapter);
 		binding.fromRecyclerView.addItemDecoration(createDividerItemDecoration(requireContext()));
 
 		AtomicReference<Path> toPath = new AtomicReference<>();
-		SelecatorRecyclerViewAdapter toSideRecyclerViewAdapter = new SelecatorRecyclerViewAdapter(requireContext(), binding.toRecyclerView, rightToLeftSwipeListener, requireActivity()::runOnUiThread, toPath);
+		SelecatorRecyclerViewAdapter toSideRecyclerViewAdapter = new SelecatorRecyclerViewAdapter(requireContext(), binding.toRecyclerView, rightToLeftSwipeListener, onUiThreadRunner, toPath, metadataStore);
 		toSide = new FirstFragmentSide("to",
 				binding.toPath,
 				this::checkIntroductionStillNeeded,
 				canFilesNowBeLoaded,
 				toPath,
-				toSideRecyclerViewAdapter);
+				toSideRecyclerViewAdapter,
+				metadataStore);
 		binding.toRecyclerView.setAdapter(toSideRecyclerViewAdapter);
 		binding.toRecyclerView.addItemDecoration(createDividerItemDecoration(requireContext()));
 
 		AtomicReference<ScrollSynchronizer.SelecatorSmoothScroller> toScrollViewAnimationHolder = new AtomicReference<>();
 		AtomicReference<ScrollSynchronizer.SelecatorSmoothScroller> fromScrollViewAnimationHolder = new AtomicReference<>();
-		List<AtomicReference<Instant>> finishTimesOfToSideBeingScrolledFromOtherSide = Collections.synchronizedList(new ArrayList<>());
-		List<AtomicReference<Instant>> finishTimesOfFromSideBeingScrolledFromOtherSide = Collections.synchronizedList(new ArrayList<>());
-		ScrollSynchronizer leftToRightScrollSynchronizer = new ScrollSynchronizer(
+		ScrolledFromOtherSide toSideScrolledFromOtherSide = new ScrolledFromOtherSide();
+		ScrolledFromOtherSide fromSideScrolledFromOtherSide = new ScrolledFromOtherSide();
+		leftToRightScrollSynchronizer = new ScrollSynchronizer(
 				"left", binding.fromRecyclerView, fromSide,
-				finishTimesOfFromSideBeingScrolledFromOtherSide, binding.toRecyclerView, toSideRecyclerViewAdapter, toSide, toScrollViewAnimationHolder, finishTimesOfToSideBeingScrolledFromOtherSide
+				fromSideScrolledFromOtherSide, binding.toRecyclerView, toSideRecyclerViewAdapter, toSide, toScrollViewAnimationHolder, toSideScrolledFromOtherSide
 		);
 		leftToRightScrollSynchronizer.register();
 		leftToRightSwipedObserver.add(leftToRightScrollSynchronizer::centerOtherView);
-		ScrollSynchronizer rightToLeftScrollSynchronizer = new ScrollSynchronizer("right",
+		rightToLeftScrollSynchronizer = new ScrollSynchronizer("right",
 				binding.toRecyclerView, toSide,
-				finishTimesOfToSideBeingScrolledFromOtherSide, binding.fromRecyclerView, fromSideRecyclerViewAdapter, fromSide, fromScrollViewAnimationHolder, finishTimesOfFromSideBeingScrolledFromOtherSide
+				toSideScrolledFromOtherSide, binding.fromRecyclerView, fromSideRecyclerViewAdapter, fromSide, fromScrollViewAnimationHolder, fromSideScrolledFromOtherSide
 		);
 		rightToLeftScrollSynchronizer.register();
 		rightToLeftSwipedObserver.add(rightToLeftScrollSynchronizer::centerOtherView);
@@ -163,6 +158,14 @@ public class FirstFragment extends Fragment {
 	@Override
 	public void onDestroyView() {
 		super.onDestroyView();
+		leftToRightScrollSynchronizer.unregister();
+		leftToRightScrollSynchronizer = null;
+		rightToLeftScrollSynchronizer.unregister();
+		rightToLeftScrollSynchronizer = null;
+		transferQueue.shutdown();
+		transferQueue = null;
+		mediaScanNotifier.shutdown();
+		mediaScanNotifier = null;
 		fromSide.onDestroyView();
 		fromSide = null;
 		toSide.onDestroyView();
@@ -217,50 +220,80 @@ public class FirstFragment extends Fragment {
 		}
 	}
 
-	@SuppressWarnings("unused")
-	private static boolean move(View view, Path anImage, Path target) {
-		try {
-			try {
-				Files.move(anImage, target);
-			} catch (FileAlreadyExistsException fileAlreadyExistsException) {
-				if (!anImage.equals(target) && !filesMismatch(anImage, target)) {
-					Files.delete(anImage); //The image already exists at the target
-				} else {
-					throw fileAlreadyExistsException;
-				}
-			}
-			MediaScannerConnection.scanFile(view.getContext(), new String[]{anImage.toAbsolutePath().toString()}, null /*mimeTypes*/, (s, uri) -> {
-			});
-			MediaScannerConnection.scanFile(view.getContext(), new String[]{target.toAbsolutePath().toString()}, null /*mimeTypes*/, (s, uri) -> {
-			});
-		} catch (IOException e) {
-			Snackbar.make(view, "Failed to move " + anImage.getFileName() + " to " + target + ": " + e.getLocalizedMessage(), Snackbar.LENGTH_LONG)
-					.setAction("Action", null).show();
-			Log.e("Error", "Failed to move " + anImage.getFileName() + " to " + target, e);
-			return false;
-		}
-		Log.i("Success", "Moved " + anImage.getFileName() + " to " + target);
-		return true;
-	}
-
 	/**
-	 * Similar to java.nio.file.Files.mismatch() - but this is not (yet) available
+	 * Moves the swiped image or, if it is selected, all selected images of its side.
+	 * They are shown on the other side at once and moved in the background. Those that fail are shown on this side again.
 	 */
-	public static boolean filesMismatch(Path path1, Path path2) throws IOException {
-		if (Files.size(path1) != Files.size(path2)) {
-			return true;
+	private void move(FirstFragmentSide fromSide, FirstFragmentSide toSide, SelecatorRecyclerViewAdapter.Data swipedImage, List<Consumer<SelecatorRecyclerViewAdapter.Data>> swipedObserver) {
+		boolean movingSelection = fromSide.isSelected(swipedImage);
+		List<SelecatorRecyclerViewAdapter.Data> images = movingSelection ? fromSide.getSelection() : List.of(swipedImage);
+		if (movingSelection) {
+			//the images that fail to move are selected again
+			fromSide.clearSelection();
 		}
+		Path fromPath = fromSide.getPath();
+		Path toPath = toSide.getPath();
+		MediaScanNotifier scanNotifier = mediaScanNotifier;
+		List<FirstFragmentSide.LoadedFile> movedFiles = fromSide.startTransferFrom(images);
+		toSide.startTransferTo(movedFiles);
+		swipedObserver.forEach(observer -> observer.accept(swipedImage));
 
-		try (InputStream is1 = new BufferedInputStream(Files.newInputStream(path1));
-			 InputStream is2 = new BufferedInputStream(Files.newInputStream(path2))) {
-			int byte1, byte2;
-			while ((byte1 = is1.read()) != -1 && (byte2 = is2.read()) != -1) {
-				if (byte1 != byte2) {
-					return true;
-				}
+		Set<String> fileNames = new HashSet<>();
+		List<String> changedPaths = new ArrayList<>();
+		List<String> failures = new ArrayList<>();
+		AtomicInteger remainingMoves = new AtomicInteger(movedFiles.size());
+		AtomicReference<Snackbar> progressSnackbar = new AtomicReference<>();
+		Runnable afterAllMoves = () -> {
+			fromSide.finishTransfer(fileNames);
+			toSide.finishTransfer(fileNames);
+			scanNotifier.notifyChanged(changedPaths);
+			if (progressSnackbar.get() != null) {
+				progressSnackbar.get().dismiss();
+			}
+			if (binding == null) {
+				return;
+			}
+			if (!failures.isEmpty()) {
+				Snackbar.make(binding.getRoot(), "Failed to move " + String.join(", ", failures), Snackbar.LENGTH_LONG)
+						.setAction("Action", null).show();
 			}
+		};
+		for (FirstFragmentSide.LoadedFile movedFile : movedFiles) {
+			String fileName = movedFile.data().imageFileName();
+			fileNames.add(fileName);
+			Path anImage = fromPath.resolve(fileName);
+			Path target = toPath.resolve(fileName);
+			transferQueue.move(anImage, target, () -> {
+				Log.i("Success", "Moved " + anImage.getFileName() + " to " + target);
+				changedPaths.add(anImage.toAbsolutePath().toString());
+				changedPaths.add(target.toAbsolutePath().toString());
+				if (remainingMoves.decrementAndGet() == 0) {
+					afterAllMoves.run();
+				}
+			}, e -> {
+				Log.e("Error", "Failed to move " + anImage.getFileName() + " to " + target, e);
+				toSide.removeImage(movedFile.data());
+				fromSide.addImage(movedFile);
+				if (movingSelection) {
+					fromSide.select(movedFile.data());
+				}
+				failures.add(anImage.getFileName() + " to " + target + ": " + e.getLocalizedMessage());
+				if (remainingMoves.decrementAndGet() == 0) {
+					afterAllMoves.run();
+				}
+			}, percent -> {
+				if (binding == null) {
+					return;
+				}
+				String progress = "Moving " + fileName + " to " + toPath.getFileName() + ": " + percent + "%";
+				if (progressSnackbar.get() == null) {
+					progressSnackbar.set(Snackbar.make(binding.getRoot(), progress, Snackbar.LENGTH_INDEFINITE));
+					progressSnackbar.get().show();
+				} else {
+					progressSnackbar.get().setText(progress);
+				}
+			});
 		}
-		return false;
 	}
 
 	@SuppressWarnings("unused")
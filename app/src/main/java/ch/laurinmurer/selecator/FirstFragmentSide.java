@@ -7,22 +7,39 @@ import androidx.appcompat.widget.AppCompatImageView;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+import ch.laurinmurer.selecator.helper.DirectoryWatcher;
 import ch.laurinmurer.selecator.helper.FileSuffixHelper;
+import ch.laurinmurer.selecator.helper.ImageMetadataStore;
 
 public class FirstFragmentSide {
 
+	private static final int LOAD_BATCH_SIZE = 100;
+	/**
+	 * Rather more than fit on a screen, as they are loaded first and handed over at once
+	 */
+	private static final int FIRST_SCREEN_IMAGE_COUNT = 20;
+	/**
+	 * Reading the metadata waits for the storage most of the time, so more threads than cores keep its queue busy
+	 */
+	private static final int METADATA_THREADS = Math.min(8, Math.max(4, Runtime.getRuntime().availableProcessors()));
+
 	/**
 	 * @noinspection unused, FieldCanBeLocal - useful for debugging
 	 */
@@ -30,18 +47,31 @@ public class FirstFragmentSide {
 	private final TextView pathLabel;
 	private final Runnable afterPathSet;
 	private final AtomicBoolean canFilesNowBeLoaded;
-	private final ExecutorService imageLoaderExecutor = Executors.newCachedThreadPool();
+	private final ExecutorService imageLoaderExecutor = Executors.newSingleThreadExecutor();
+	private final AtomicBoolean rescanQueued = new AtomicBoolean();
+	private final ExecutorService metadataExecutor = Executors.newFixedThreadPool(METADATA_THREADS);
 	private final SelecatorRecyclerViewAdapter recyclerViewAdapter;
 	private final AtomicReference<Path> path;
-	private final AtomicInteger loadedImageCount = new AtomicInteger();
+	private final ImageMetadataStore metadataStore;
+	/**
+	 * What the adapter holds (or is about to), with the last modification of the file at the time it was loaded
+	 */
+	private final Map<String, LoadedFile> loadedFiles = new ConcurrentHashMap<>();
+	/**
+	 * Files being moved from or to this side, which are left alone by rescans until the move is finished
+	 */
+	private final Map<String, Integer> transferCountByFileName = new ConcurrentHashMap<>();
+	private final DirectoryWatcher directoryWatcher;
 
-	public FirstFragmentSide(String side, TextView pathLabel, Runnable afterPathSet, AtomicBoolean canFilesNowBeLoaded, AtomicReference<Path> pathReferenceHolder, SelecatorRecyclerViewAdapter recyclerViewAdapter) {
+	public FirstFragmentSide(String side, TextView pathLabel, Runnable afterPathSet, AtomicBoolean canFilesNowBeLoaded, AtomicReference<Path> pathReferenceHolder, SelecatorRecyclerViewAdapter recyclerViewAdapter, ImageMetadataStore metadataStore) {
 		this.side = side;
 		this.pathLabel = pathLabel;
 		this.afterPathSet = afterPathSet;
 		this.canFilesNowBeLoaded = canFilesNowBeLoaded;
 		this.path = pathReferenceHolder;
 		this.recyclerViewAdapter = recyclerViewAdapter;
+		this.metadataStore = metadataStore;
+		this.directoryWatcher = new DirectoryWatcher(side, this::applyChangedFilesInNewThread);
 	}
 
 	public boolean hasValidDirectorySelected() {
@@ -49,15 +79,23 @@ public class FirstFragmentSide {
 	}
 
 	public void onDestroyView() {
-		imageLoaderExecutor.shutdown();
+		directoryWatcher.shutdown();
+		//interrupts a load waiting for metadata tasks, which are dropped by the shutdown of their executor
+		imageLoaderExecutor.shutdownNow();
+		metadataExecutor.shutdownNow();
+		recyclerViewAdapter.onDestroyView();
+	}
+
+	public void onScrolled(int dy) {
+		recyclerViewAdapter.onScrolled(dy);
 	}
 
 	public SelecatorRecyclerViewAdapter.Data getImageDataForView(AppCompatImageView imageView) {
 		return recyclerViewAdapter.getCurrentBinding(imageView);
 	}
 
-	public Instant getTimestampForImage(AppCompatImageView imageView) {
-		return Instant.ofEpochMilli(getImageDataForView(imageView).timestamp());
+	public long getTimestampForImage(AppCompatImageView imageView) {
+		return getImageDataForView(imageView).timestamp();
 	}
 
 	public Path getPath() {
@@ -77,15 +115,24 @@ public class FirstFragmentSide {
 
 	public void loadFilesInNewThread() {
 		Path path = this.path.get();
-		if (path != null && path.toFile().isDirectory()) {
+		if (path != null && path.toFile().isDirectory() && !rescanQueued.getAndSet(true)) {
+			//started before listing, so no change gets lost in between
+			directoryWatcher.watch(path.toFile());
 			imageLoaderExecutor.submit(() -> {
+				rescanQueued.set(false);
 				try {
+					if (loadedFiles.isEmpty()) {
+						recyclerViewAdapter.startMeasuringTimeToFirstThumbnail();
+					}
 					long time1 = System.currentTimeMillis();
 					File[] filesInPath = listImagesOnDisk();
 					long time2 = System.currentTimeMillis();
 					Log.i("Performance", "Listing files took " + (time2 - time1) + "ms");
-					removeImagesNoMoreOnDisk(filesInPath);
-					loadImages(filesInPath);
+					Set<String> fileNamesOnDisk = Arrays.stream(filesInPath)
+							.map(File::getName)
+							.collect(Collectors.toSet());
+					applyChangesOnDisk(filesInPath, fileNamesOnDisk);
+					metadataStore.persist(path.toFile(), fileNamesOnDisk);
 				} catch (RuntimeException e) {
 					Log.e("Exception", e.getLocalizedMessage(), e);
 					throw e;
@@ -102,59 +149,226 @@ public class FirstFragmentSide {
 		return filesInPath;
 	}
 
-	private void removeImagesNoMoreOnDisk(File[] filesInPath) {
-		Set<String> filesOnDisk = Arrays.stream(filesInPath)
-				.map(File::getName)
-				.collect(Collectors.toSet());
-		for (int index = recyclerViewAdapter.getItemCount() - 1; index >= 0; index--) {
-			SelecatorRecyclerViewAdapter.Data data = recyclerViewAdapter.getData(index);
-			if (!filesOnDisk.contains(data.imageFileName())) {
-				recyclerViewAdapter.removeData(data);
-			}
-		}
-	}
-
 	/**
+	 * Compares the files on disk with the ones already loaded and only adds, removes or updates the differing ones.
+	 *
 	 * @noinspection SimplifyStreamApiCallChains: not supported by current API level
 	 */
-	private void loadImages(File[] filesInPath) {
+	private void applyChangesOnDisk(File[] filesInPath, Set<String> fileNamesOnDisk) {
 		long time1 = System.currentTimeMillis();
 		List<FileToLoad> filesToLoad = Arrays.stream(filesInPath)
 				.parallel()
-				.filter(File::isFile)
 				.filter(f -> !f.getName().startsWith("."))
 				.filter(f -> FileSuffixHelper.hasASupportedSuffix(f.getName()))
+				.filter(f -> !isInTransfer(f.getName()))
 				.map(imageFile -> new FileToLoad(imageFile, imageFile.lastModified()))
-				.collect(Collectors.toUnmodifiableList()).stream()
-				.sorted(Comparator.comparingLong(FileToLoad::lastModified).reversed())
-				.collect(Collectors.toUnmodifiableList());
+				.filter(this::isNewOrChanged)
+				.filter(f -> f.file().isFile())
+				.collect(Collectors.toList());
+		Set<String> fileNamesToLoad = filesToLoad.stream().map(f -> f.file().getName()).collect(Collectors.toSet());
+		List<SelecatorRecyclerViewAdapter.Data> toRemove = new ArrayList<>();
+		loadedFiles.forEach((fileName, loadedFile) -> {
+			//a changed file is removed and loaded again
+			if (fileNamesToLoad.contains(fileName) || (!fileNamesOnDisk.contains(fileName) && !isInTransfer(fileName))) {
+				toRemove.add(loadedFile.data());
+			}
+		});
+		moveNewestToFront(filesToLoad, FIRST_SCREEN_IMAGE_COUNT);
 		long time2 = System.currentTimeMillis();
-		Log.i("Performance", "Checking and sorting files took " + (time2 - time1) + "ms");
-		filesToLoad.stream()
-				.map(FileToLoad::file)
-				.forEach(this::loadImage);
-		long time3 = System.currentTimeMillis();
-		Log.i("Performance", "Loading all images took " + (time3 - time2) + "ms on thread:" + Thread.currentThread());
-	}
-
-	public SelecatorRecyclerViewAdapter.Data loadImage(File anImage) {
-		SelecatorRecyclerViewAdapter.Data data = new SelecatorRecyclerViewAdapter.Data(anImage);
-		recyclerViewAdapter.addData(data);
-		int firstImpressionImageCountEstimate = 10;
-		if (loadedImageCount.incrementAndGet() == firstImpressionImageCountEstimate) {
-			Log.i("Performance", "Already loaded the first " + firstImpressionImageCountEstimate + " images");
+		Log.i("Performance", "Comparing files took " + (time2 - time1) + "ms, " + toRemove.size() + " to remove and " + filesToLoad.size() + " to load");
+		applyChanges(toRemove, filesToLoad);
+	}
+
+	/**
+	 * Selects the newest files (in O(n log count) instead of sorting all of them) and moves them sorted to the front.
+	 * The order of the others does not matter, as they are loaded afterwards and sorted by the list anyway.
+	 */
+	private static void moveNewestToFront(List<FileToLoad> files, int count) {
+		Comparator<FileToLoad> byLastModified = Comparator.comparingLong(FileToLoad::lastModified);
+		PriorityQueue<FileToLoad> oldestOfNewestOnTop = new PriorityQueue<>(count + 1, byLastModified);
+		for (FileToLoad file : files) {
+			oldestOfNewestOnTop.add(file);
+			if (oldestOfNewestOnTop.size() > count) {
+				oldestOfNewestOnTop.poll();
+			}
+		}
+		List<FileToLoad> newest = new ArrayList<>(oldestOfNewestOnTop);
+		newest.sort(byLastModified.reversed());
+		Set<FileToLoad> newestSet = Set.copyOf(newest);
+		files.removeIf(newestSet::contains);
+		files.addAll(0, newest);
+	}
+
+	private void applyChangedFilesInNewThread(Set<String> changedFileNames) {
+		if (imageLoaderExecutor.isShutdown()) {
+			return;
+		}
+		imageLoaderExecutor.submit(() -> {
+			try {
+				applyChangedFiles(changedFileNames);
+			} catch (RuntimeException e) {
+				Log.e("Exception", e.getLocalizedMessage(), e);
+				throw e;
+			}
+		});
+	}
+
+	/**
+	 * Applies the changes reported by the directory watcher, without listing the whole directory.
+	 */
+	private void applyChangedFiles(Set<String> changedFileNames) {
+		Path path = this.path.get();
+		if (path == null) {
+			return;
+		}
+		List<SelecatorRecyclerViewAdapter.Data> toRemove = new ArrayList<>();
+		List<FileToLoad> filesToLoad = new ArrayList<>();
+		for (String fileName : changedFileNames) {
+			if (isInTransfer(fileName)) {
+				continue;
+			}
+			File file = path.resolve(fileName).toFile();
+			if (file.isFile() && !fileName.startsWith(".") && FileSuffixHelper.hasASupportedSuffix(fileName)) {
+				FileToLoad fileToLoad = new FileToLoad(file, file.lastModified());
+				if (isNewOrChanged(fileToLoad)) {
+					filesToLoad.add(fileToLoad);
+					//a changed file is removed and loaded again
+					addDataIfLoaded(fileName, toRemove);
+				}
+			} else {
+				addDataIfLoaded(fileName, toRemove);
+			}
+		}
+		filesToLoad.sort(Comparator.comparingLong(FileToLoad::lastModified).reversed());
+		Log.i("Performance", "Directory watcher reported " + changedFileNames.size() + " changed files, " + toRemove.size() + " to remove and " + filesToLoad.size() + " to load");
+		applyChanges(toRemove, filesToLoad);
+	}
+
+	private void applyChanges(List<SelecatorRecyclerViewAdapter.Data> toRemove, List<FileToLoad> filesToLoad) {
+		long time1 = System.currentTimeMillis();
+		toRemove.forEach(data -> loadedFiles.remove(data.imageFileName()));
+		if (filesToLoad.isEmpty()) {
+			recyclerViewAdapter.updateData(toRemove, List.of());
+			return;
+		}
+		//submitted newest first, so these are usually also completed first
+		CompletionService<LoadedFile> completionService = new ExecutorCompletionService<>(metadataExecutor);
+		for (FileToLoad fileToLoad : filesToLoad) {
+			completionService.submit(() -> new LoadedFile(new SelecatorRecyclerViewAdapter.Data(fileToLoad.file(), metadataStore), fileToLoad.lastModified()));
+		}
+		List<SelecatorRecyclerViewAdapter.Data> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+		for (int i = 0; i < filesToLoad.size(); i++) {
+			LoadedFile loadedFile;
 			try {
-				Thread.sleep(100);
-			} catch (InterruptedException ignored) {
+				loadedFile = completionService.take().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				Log.e("Exception", "Failed to load an image", e);
+				continue;
+			}
+			loadedFiles.put(loadedFile.data().imageFileName(), loadedFile);
+			batch.add(loadedFile.data());
+			//the first screen is handed over as soon as it is complete
+			if (batch.size() == LOAD_BATCH_SIZE || i + 1 == FIRST_SCREEN_IMAGE_COUNT) {
+				recyclerViewAdapter.updateData(toRemove, batch);
+				toRemove.clear();
+				batch = new ArrayList<>(LOAD_BATCH_SIZE);
 			}
 		}
-		return data;
+		recyclerViewAdapter.updateData(toRemove, batch);
+		long time2 = System.currentTimeMillis();
+		Log.i("Performance", "Loading " + filesToLoad.size() + " images took " + (time2 - time1) + "ms on thread:" + Thread.currentThread());
+	}
+
+	private void addDataIfLoaded(String fileName, List<SelecatorRecyclerViewAdapter.Data> data) {
+		LoadedFile loadedFile = loadedFiles.get(fileName);
+		if (loadedFile != null) {
+			data.add(loadedFile.data());
+		}
+	}
+
+	private boolean isNewOrChanged(FileToLoad file) {
+		LoadedFile loadedFile = loadedFiles.get(file.file().getName());
+		return loadedFile == null || loadedFile.lastModified() != file.lastModified();
+	}
+
+	/**
+	 * Removes the images before they are actually moved away, so the UI does not wait for the move
+	 *
+	 * @return what is needed to show the images on the other side or, if a move fails, to restore them here
+	 */
+	public List<LoadedFile> startTransferFrom(List<SelecatorRecyclerViewAdapter.Data> images) {
+		List<LoadedFile> transferredFiles = new ArrayList<>(images.size());
+		for (SelecatorRecyclerViewAdapter.Data anImage : images) {
+			startTransfer(anImage.imageFileName());
+			LoadedFile loadedFile = loadedFiles.remove(anImage.imageFileName());
+			//without a known modification it is loaded again after the move
+			transferredFiles.add(loadedFile != null ? loadedFile : new LoadedFile(anImage, 0));
+		}
+		recyclerViewAdapter.updateData(images, List.of());
+		return transferredFiles;
+	}
+
+	/**
+	 * Shows the images before they are actually moved here, so the UI does not wait for the move
+	 */
+	public void startTransferTo(List<LoadedFile> images) {
+		for (LoadedFile anImage : images) {
+			startTransfer(anImage.data().imageFileName());
+			loadedFiles.put(anImage.data().imageFileName(), anImage);
+		}
+		recyclerViewAdapter.updateData(List.of(), images.stream().map(LoadedFile::data).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Compares the images with the disk again, in case the moves did not end up as expected
+	 */
+	public void finishTransfer(Set<String> fileNames) {
+		for (String fileName : fileNames) {
+			transferCountByFileName.computeIfPresent(fileName, (name, count) -> count > 1 ? count - 1 : null);
+		}
+		applyChangedFilesInNewThread(fileNames);
+	}
+
+	public boolean isSelected(SelecatorRecyclerViewAdapter.Data anImage) {
+		return recyclerViewAdapter.isSelected(anImage);
+	}
+
+	public List<SelecatorRecyclerViewAdapter.Data> getSelection() {
+		return recyclerViewAdapter.getSelection();
+	}
+
+	public void clearSelection() {
+		recyclerViewAdapter.clearSelection();
+	}
+
+	public void select(SelecatorRecyclerViewAdapter.Data anImage) {
+		recyclerViewAdapter.select(anImage);
+	}
+
+	private void startTransfer(String fileName) {
+		transferCountByFileName.merge(fileName, 1, Integer::sum);
+	}
+
+	private boolean isInTransfer(String fileName) {
+		return transferCountByFileName.containsKey(fileName);
+	}
+
+	public void addImage(LoadedFile anImage) {
+		loadedFiles.put(anImage.data().imageFileName(), anImage);
+		recyclerViewAdapter.addData(anImage.data());
 	}
 
 	public void removeImage(SelecatorRecyclerViewAdapter.Data anImage) {
+		loadedFiles.remove(anImage.imageFileName());
 		recyclerViewAdapter.removeData(anImage);
 	}
 
 	private record FileToLoad(File file, long lastModified) {
 	}
+
+	record LoadedFile(SelecatorRecyclerViewAdapter.Data data, long lastModified) {
+	}
 }
\ No newline at end of file
@@ -0,0 +1,259 @@
+package ch.laurinmurer.selecator;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.chrisbanes.photoview.PhotoView;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import ch.laurinmurer.selecator.helper.BitmapLoader;
+import ch.laurinmurer.selecator.helper.ImageMetadata;
+import ch.laurinmurer.selecator.helper.ImageMetadataStore;
+import ch.laurinmurer.selecator.helper.ScreenSizedBitmapLoader;
+
+/**
+ * Shows an image in three stages, so its full resolution is never decoded at once: the list thumbnail right away,
+ * then a version fitting the screen and, when zoomed in further than that one's resolution, the visible region decoded in detail.
+ * The memory needed therefore depends on the screen size only, not on the image's resolution.
+ */
+public class FullscreenImageView extends PhotoView {
+	/**
+	 * The region is only decoded once zooming has come to rest
+	 */
+	private static final long REGION_DECODE_DELAY_MILLIS = 150;
+	/**
+	 * Above this, the screen sized bitmap is visibly blurry
+	 */
+	private static final float MAX_UPSCALING = 1.5f;
+	private final ScreenSizedBitmapLoader screenSizedBitmapLoader;
+	private final ImageMetadataStore metadataStore;
+	private final ExecutorService regionDecodeExecutor;
+	private final Consumer<Runnable> onUiThreadRunner;
+	private final Paint regionPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private final RectF regionDestination = new RectF();
+	private final Runnable decodeVisibleRegionRunnable = this::decodeVisibleRegion;
+	private File image;
+	/**
+	 * Null until read on the region decode executor
+	 */
+	private ImageMetadata metadata;
+	/**
+	 * Only accessed by the region decode executor
+	 */
+	private BitmapRegionDecoder regionDecoder;
+	private boolean regionDecoderUnsupported;
+	private Future<?> pendingMetadataRead;
+	private Future<?> pendingRegionDecode;
+	private Bitmap regionBitmap;
+	/**
+	 * Which part of the (oriented) image the region bitmap shows, as fractions of its width and height
+	 */
+	private RectF regionBitmapFraction;
+	private boolean closed;
+
+	/**
+	 * @param regionDecodeExecutor should be single threaded, so the decodes of this view do not run concurrently
+	 */
+	public FullscreenImageView(@NonNull Context context, ScreenSizedBitmapLoader screenSizedBitmapLoader, ImageMetadataStore metadataStore, ExecutorService regionDecodeExecutor, Consumer<Runnable> onUiThreadRunner) {
+		super(context);
+		this.screenSizedBitmapLoader = screenSizedBitmapLoader;
+		this.metadataStore = metadataStore;
+		this.regionDecodeExecutor = regionDecodeExecutor;
+		this.onUiThreadRunner = onUiThreadRunner;
+		setOnMatrixChangeListener(displayRect -> {
+			removeCallbacks(decodeVisibleRegionRunnable);
+			postDelayed(decodeVisibleRegionRunnable, REGION_DECODE_DELAY_MILLIS);
+		});
+	}
+
+	/**
+	 * Can be called again to show another image in the same view.
+	 *
+	 * @param thumbnail to show until the screen sized version is decoded
+	 */
+	public void show(File image, @Nullable Bitmap thumbnail) {
+		close();
+		closed = false;
+		this.image = image;
+		this.metadata = null;
+		Optional<Bitmap> screenSized = screenSizedBitmapLoader.peek(image);
+		if (screenSized != null && screenSized.isPresent()) {
+			setImageBitmap(screenSized.get());
+		} else {
+			setImageBitmap(thumbnail);
+			screenSizedBitmapLoader.load(image).thenAccept(loaded -> onUiThreadRunner.accept(() -> {
+				if (isShowing(image) && loaded.isPresent()) {
+					setImageBitmapKeepingZoom(loaded.get());
+				}
+			}));
+		}
+		pendingMetadataRead = regionDecodeExecutor.submit(() -> {
+			ImageMetadata imageMetadata = metadataStore.get(image);
+			onUiThreadRunner.accept(() -> {
+				if (isShowing(image)) {
+					metadata = imageMetadata;
+				}
+			});
+		});
+	}
+
+	/**
+	 * Releases the decoded region, to be called when the view does not show the image anymore
+	 */
+	public void close() {
+		closed = true;
+		removeCallbacks(decodeVisibleRegionRunnable);
+		cancel(pendingMetadataRead);
+		cancel(pendingRegionDecode);
+		regionBitmap = null;
+		if (regionDecodeExecutor.isShutdown()) {
+			return;
+		}
+		regionDecodeExecutor.execute(() -> {
+			if (regionDecoder != null) {
+				regionDecoder.recycle();
+				regionDecoder = null;
+			}
+			regionDecoderUnsupported = false;
+		});
+	}
+
+	private boolean isShowing(File image) {
+		return !closed && image.equals(this.image);
+	}
+
+	private void setImageBitmapKeepingZoom(Bitmap bitmap) {
+		//the zoom is relative to the image fitting the view, which stays the same as long as the aspect ratio does
+		Matrix zoom = new Matrix();
+		getSuppMatrix(zoom);
+		setImageBitmap(bitmap);
+		setSuppMatrix(zoom);
+	}
+
+	@Override
+	protected void onDraw(@NonNull Canvas canvas) {
+		super.onDraw(canvas);
+		RectF displayRect = getDisplayRect();
+		if (regionBitmap != null && displayRect != null) {
+			regionDestination.set(
+					displayRect.left + regionBitmapFraction.left * displayRect.width(),
+					displayRect.top + regionBitmapFraction.top * displayRect.height(),
+					displayRect.left + regionBitmapFraction.right * displayRect.width(),
+					displayRect.top + regionBitmapFraction.bottom * displayRect.height());
+			canvas.drawBitmap(regionBitmap, null, regionDestination, regionPaint);
+		}
+	}
+
+	private void decodeVisibleRegion() {
+		Drawable drawable = getDrawable();
+		RectF displayRect = getDisplayRect();
+		if (closed || drawable == null || displayRect == null || metadata == null || metadata.width() <= 0 || metadata.height() <= 0) {
+			return;
+		}
+		int rotationDegrees = metadata.rotationDegrees();
+		boolean swapSides = rotationDegrees % 180 != 0;
+		int orientedWidth = swapSides ? metadata.height() : metadata.width();
+		int orientedHeight = swapSides ? metadata.width() : metadata.height();
+		cancel(pendingRegionDecode);
+		RectF visible = new RectF(0, 0, getWidth(), getHeight());
+		if (displayRect.width() <= drawable.getIntrinsicWidth() * MAX_UPSCALING || !visible.intersect(displayRect)) {
+			//the screen sized bitmap is sharp enough
+			regionBitmap = null;
+			invalidate();
+			return;
+		}
+		RectF fraction = new RectF(
+				(visible.left - displayRect.left) / displayRect.width(),
+				(visible.top - displayRect.top) / displayRect.height(),
+				(visible.right - displayRect.left) / displayRect.width(),
+				(visible.bottom - displayRect.top) / displayRect.height());
+		int sampleSize = BitmapLoader.calculateInSampleSize(
+				(int) (fraction.width() * orientedWidth), (int) (fraction.height() * orientedHeight),
+				(int) visible.width(), (int) visible.height());
+		Rect region = toUnrotatedRegion(fraction, rotationDegrees, metadata.width(), metadata.height());
+		File image = this.image;
+		pendingRegionDecode = regionDecodeExecutor.submit(() -> {
+			Bitmap decodedRegion = decodeRegion(image, region, sampleSize, rotationDegrees);
+			if (decodedRegion != null) {
+				onUiThreadRunner.accept(() -> {
+					if (isShowing(image)) {
+						regionBitmap = decodedRegion;
+						regionBitmapFraction = fraction;
+						invalidate();
+					}
+				});
+			}
+		});
+	}
+
+	@Nullable
+	private Bitmap decodeRegion(File image, Rect region, int sampleSize, int rotationDegrees) {
+		if (regionDecoderUnsupported) {
+			return null;
+		}
+		try {
+			if (regionDecoder == null) {
+				//noinspection deprecation - the replacement is only available from API-Level 31
+				regionDecoder = BitmapRegionDecoder.newInstance(image.getPath(), false);
+			}
+			long time1 = System.currentTimeMillis();
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inSampleSize = sampleSize;
+			Bitmap decodedRegion = regionDecoder.decodeRegion(region, options);
+			if (decodedRegion != null && rotationDegrees != 0) {
+				Matrix rotation = new Matrix();
+				rotation.setRotate(rotationDegrees);
+				decodedRegion = Bitmap.createBitmap(decodedRegion, 0, 0, decodedRegion.getWidth(), decodedRegion.getHeight(), rotation, true);
+			}
+			long time2 = System.currentTimeMillis();
+			Log.i("Performance", "Decoding region " + region + " of " + image.getName() + " with sample size " + sampleSize + " took " + (time2 - time1) + "ms");
+			return decodedRegion;
+		} catch (IOException | RuntimeException e) {
+			Log.w(FullscreenImageView.class.getName(), "Could not decode a region of " + image, e);
+			regionDecoderUnsupported = true;
+			return null;
+		}
+	}
+
+	/**
+	 * @param fraction of the image as shown, i.e. rotated according to its orientation
+	 * @return the same part of the image as stored in the file
+	 */
+	private static Rect toUnrotatedRegion(RectF fraction, int rotationDegrees, int width, int height) {
+		RectF unrotated = switch (rotationDegrees) {
+			case 90 -> new RectF(fraction.top, 1 - fraction.right, fraction.bottom, 1 - fraction.left);
+			case 180 -> new RectF(1 - fraction.right, 1 - fraction.bottom, 1 - fraction.left, 1 - fraction.top);
+			case 270 -> new RectF(1 - fraction.bottom, fraction.left, 1 - fraction.top, fraction.right);
+			default -> fraction;
+		};
+		return new Rect(
+				Math.max(0, (int) (unrotated.left * width)),
+				Math.max(0, (int) (unrotated.top * height)),
+				Math.min(width, (int) Math.ceil(unrotated.right * width)),
+				Math.min(height, (int) Math.ceil(unrotated.bottom * height)));
+	}
+
+	private static void cancel(@Nullable Future<?> future) {
+		if (future != null) {
+			future.cancel(false);
+		}
+	}
+}
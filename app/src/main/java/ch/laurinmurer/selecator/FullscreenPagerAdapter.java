@@ -0,0 +1,142 @@
+package ch.laurinmurer.selecator;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.widget.AppCompatImageView;
+import androidx.recyclerview.widget.RecyclerView;
+
+import ch.laurinmurer.selecator.helper.FileSuffixHelper;
+import ch.laurinmurer.selecator.helper.ScreenSizedBitmapLoader;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The pages of the fullscreen view, one per image of a side. Videos are shown as thumbnail, to be played when clicked.
+ */
+public class FullscreenPagerAdapter extends RecyclerView.Adapter<FullscreenPagerAdapter.PageViewHolder> {
+	private static final int VIEW_TYPE_IMAGE = 0;
+	private static final int VIEW_TYPE_VIDEO = 1;
+	/**
+	 * How many images before and after the shown one are decoded in advance
+	 */
+	public static final int NEIGHBOUR_COUNT = 2;
+
+	private final Context context;
+	private final List<SelecatorRecyclerViewAdapter.Data> pages;
+	private final Path directory;
+	private final Supplier<FullscreenImageView> imageViewFactory;
+	private final ScreenSizedBitmapLoader screenSizedBitmapLoader;
+	private final Function<String, Bitmap> thumbnailProvider;
+	private final Consumer<SelecatorRecyclerViewAdapter.Data> onPageClicked;
+
+	/**
+	 * @param pages             a snapshot of the side's images, so the pages do not shift while paging
+	 * @param thumbnailProvider the list bitmap of a file, shown until the screen sized one is decoded, or null
+	 */
+	public FullscreenPagerAdapter(Context context, List<SelecatorRecyclerViewAdapter.Data> pages, Path directory, Supplier<FullscreenImageView> imageViewFactory, ScreenSizedBitmapLoader screenSizedBitmapLoader, Function<String, Bitmap> thumbnailProvider, Consumer<SelecatorRecyclerViewAdapter.Data> onPageClicked) {
+		this.context = context;
+		this.pages = pages;
+		this.directory = directory;
+		this.imageViewFactory = imageViewFactory;
+		this.screenSizedBitmapLoader = screenSizedBitmapLoader;
+		this.thumbnailProvider = thumbnailProvider;
+		this.onPageClicked = onPageClicked;
+	}
+
+	@Override
+	public int getItemViewType(int position) {
+		return FileSuffixHelper.hasAVideoSuffix(pages.get(position).imageFileName()) ? VIEW_TYPE_VIDEO : VIEW_TYPE_IMAGE;
+	}
+
+	@NonNull
+	@Override
+	public PageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+		AppCompatImageView imageView;
+		if (viewType == VIEW_TYPE_VIDEO) {
+			ThumbnailImageView thumbnailImageView = new ThumbnailImageView(context);
+			thumbnailImageView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+			thumbnailImageView.setPlayOverlayShown(true);
+			imageView = thumbnailImageView;
+		} else {
+			imageView = imageViewFactory.get();
+		}
+		imageView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+		return new PageViewHolder(imageView);
+	}
+
+	@Override
+	public void onBindViewHolder(@NonNull PageViewHolder holder, int position) {
+		SelecatorRecyclerViewAdapter.Data data = pages.get(position);
+		AppCompatImageView imageView = holder.getImageView();
+		Bitmap thumbnail = thumbnailProvider.apply(data.imageFileName());
+		if (imageView instanceof FullscreenImageView fullscreenImageView) {
+			fullscreenImageView.show(directory.resolve(data.imageFileName()).toFile(), thumbnail);
+		} else {
+			imageView.setImageBitmap(thumbnail);
+		}
+		imageView.setOnClickListener(v -> onPageClicked.accept(data));
+	}
+
+	@Override
+	public void onViewRecycled(@NonNull PageViewHolder holder) {
+		super.onViewRecycled(holder);
+		AppCompatImageView imageView = holder.getImageView();
+		if (imageView instanceof FullscreenImageView fullscreenImageView) {
+			fullscreenImageView.close();
+		}
+		//releases the list bitmap
+		imageView.setImageBitmap(null);
+	}
+
+	@Override
+	public int getItemCount() {
+		return pages.size();
+	}
+
+	public int indexOf(SelecatorRecyclerViewAdapter.Data data) {
+		return pages.indexOf(data);
+	}
+
+	/**
+	 * To be called on the UI thread when the given page is shown: decodes it and its neighbours, the nearest first
+	 */
+	public void prefetchAround(int position) {
+		List<File> images = new ArrayList<>(2 * NEIGHBOUR_COUNT + 1);
+		addImageOfPage(images, position);
+		for (int distance = 1; distance <= NEIGHBOUR_COUNT; distance++) {
+			addImageOfPage(images, position + distance);
+			addImageOfPage(images, position - distance);
+		}
+		screenSizedBitmapLoader.prefetch(images);
+	}
+
+	private void addImageOfPage(List<File> images, int position) {
+		if (position >= 0 && position < pages.size() && getItemViewType(position) == VIEW_TYPE_IMAGE) {
+			images.add(directory.resolve(pages.get(position).imageFileName()).toFile());
+		}
+	}
+
+	public static class PageViewHolder extends RecyclerView.ViewHolder {
+
+		private final AppCompatImageView imageView;
+
+		public PageViewHolder(@NonNull AppCompatImageView imageView) {
+			super(imageView);
+			this.imageView = imageView;
+		}
+
+		public AppCompatImageView getImageView() {
+			return imageView;
+		}
+	}
+}
@@ -1,14 +1,16 @@
 package ch.laurinmurer.selecator;
 
 import android.annotation.SuppressLint;
+import android.app.ActivityManager;
 import android.app.Dialog;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.PorterDuff;
 import android.graphics.drawable.ColorDrawable;
 
-import androidx.exifinterface.media.ExifInterface;
-
 import android.net.Uri;
+import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
@@ -17,35 +19,51 @@ import android.widget.RelativeLayout;
 import android.widget.VideoView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.widget.AppCompatImageView;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.PagerSnapHelper;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.SortedList;
 import androidx.recyclerview.widget.SortedListAdapterCallback;
 
 import ch.laurinmurer.selecator.helper.CachedBitmapLoader;
+import ch.laurinmurer.selecator.helper.DecodeScheduler;
 import ch.laurinmurer.selecator.helper.FileSuffixHelper;
-
-import com.github.chrisbanes.photoview.PhotoView;
+import ch.laurinmurer.selecator.helper.ImageMetadataStore;
+import ch.laurinmurer.selecator.helper.ScreenSizedBitmapLoader;
+import ch.laurinmurer.selecator.helper.TimestampIndex;
 
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Path;
-import java.text.ParsePosition;
-import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
-import java.util.Locale;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
 
 public class SelecatorRecyclerViewAdapter extends RecyclerView.Adapter<SelecatorRecyclerViewAdapter.SelecatorViewHolder> {
 
+	private static final int PLACEHOLDER_HEIGHT_RATIO_PERCENT = 75;
+	private static final int PREFETCH_WINDOW = 10;
+	private static final int SELECTION_TINT = 0x660077FF;
+
 	private final SortedList<Data> dataSet = new SortedList<>(Data.class, Data.createSorter(this));
 	private final Map<AppCompatImageView, Data> currentImageBindings = Collections.synchronizedMap(new WeakHashMap<>());
 
@@ -54,16 +72,45 @@ public class SelecatorRecyclerViewAdapter extends RecyclerView.Adapter<Selecator
 	private final View.OnTouchListener swipeListener;
 	private final Consumer<Runnable> onUiThreadRunner;
 	private final AtomicReference<Path> path;
+	private final ImageMetadataStore metadataStore;
 	private final CompletableFuture<CachedBitmapLoader> cachedBitmapLoader = new CompletableFuture<>();
-
-	public SelecatorRecyclerViewAdapter(Context context, RecyclerView recyclerView, View.OnTouchListener swipeListener, Consumer<Runnable> onUiThreadRunner, AtomicReference<Path> path) {
+	private final DecodeScheduler<Data> decodeScheduler;
+	private final ScreenSizedBitmapLoader screenSizedBitmapLoader;
+	private final ExecutorService fullscreenDecodeExecutor;
+	/**
+	 * What releases the content of each open dialog, only accessed on the UI thread
+	 */
+	private final Map<Dialog, Runnable> openFullscreenDialogs = new HashMap<>();
+	private final Queue<PendingUpdate> pendingUpdates = new ConcurrentLinkedQueue<>();
+	private final Queue<Runnable> actionsAfterPendingUpdates = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean flushOfPendingUpdatesScheduled = new AtomicBoolean();
+	/**
+	 * Only accessed on the UI thread
+	 */
+	private final Set<Data> selection = new HashSet<>();
+	/**
+	 * Only accessed on the UI thread
+	 */
+	private final TimestampIndex timestampIndex = new TimestampIndex(dataSet::size, index -> dataSet.get(index).timestamp());
+	private final AtomicLong timeToFirstThumbnailStartNanos = new AtomicLong();
+
+	public SelecatorRecyclerViewAdapter(Context context, RecyclerView recyclerView, View.OnTouchListener swipeListener, Consumer<Runnable> onUiThreadRunner, AtomicReference<Path> path, ImageMetadataStore metadataStore) {
 		this.context = context;
 		this.recyclerView = recyclerView;
 		this.swipeListener = swipeListener;
 		this.onUiThreadRunner = onUiThreadRunner;
 		this.path = path;
+		this.metadataStore = metadataStore;
+		this.decodeScheduler = new DecodeScheduler<>(String.valueOf(recyclerView.getContentDescription()), PREFETCH_WINDOW);
+		this.fullscreenDecodeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			thread.setName(FullscreenImageView.class.getName() + "-for-" + recyclerView.getContentDescription());
+			return thread;
+		});
+		this.screenSizedBitmapLoader = ScreenSizedBitmapLoader.getInstance((ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE), context.getResources().getDisplayMetrics(), FullscreenPagerAdapter.NEIGHBOUR_COUNT);
 		recyclerView.getViewTreeObserver().addOnGlobalLayoutListener(() ->
-				cachedBitmapLoader.complete(new CachedBitmapLoader(path, recyclerView.getWidth(), context))
+				cachedBitmapLoader.complete(new CachedBitmapLoader(path, recyclerView.getWidth(), context, metadataStore))
 		);
 	}
 
@@ -71,7 +118,7 @@ public class SelecatorRecyclerViewAdapter extends RecyclerView.Adapter<Selecator
 	@Override
 	@SuppressLint("ClickableViewAccessibility")
 	public SelecatorViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-		AppCompatImageView imageView = new AppCompatImageView(context);
+		ThumbnailImageView imageView = new ThumbnailImageView(context);
 		imageView.setAdjustViewBounds(true);
 		imageView.setScaleType(ImageView.ScaleType.FIT_XY);
 		imageView.setBackgroundColor(Color.RED);
@@ -83,15 +130,215 @@ public class SelecatorRecyclerViewAdapter extends RecyclerView.Adapter<Selecator
 	@Override
 	public void onBindViewHolder(@NonNull SelecatorViewHolder holder, int position) {
 		Data data = dataSet.get(position);
-		AppCompatImageView imageView = holder.getImageView();
+		ThumbnailImageView imageView = holder.getImageView();
+		holder.cancelPendingLoad();
 		currentImageBindings.put(imageView, data);
-		imageView.setImageBitmap(cachedBitmapLoader.join().load(data.imageFileName()).orElse(null));
-		imageView.setOnClickListener(v -> showImageFullscreen(data.imageFileName()));
+		bindBitmap(holder, data, position);
+		imageView.setPlayOverlayShown(FileSuffixHelper.hasAVideoSuffix(data.imageFileName()));
+		imageView.setOnClickListener(v -> showFullscreen(data));
+		imageView.setOnLongClickListener(v -> {
+			toggleSelection(data);
+			return true;
+		});
+		if (selection.contains(data)) {
+			imageView.setColorFilter(SELECTION_TINT, PorterDuff.Mode.SRC_ATOP);
+		} else {
+			imageView.clearColorFilter();
+		}
 		//Reset values because this view might be altered by the swipe listener
 		((View) imageView).setAlpha(1);
 		imageView.setTranslationX(0);
 	}
 
+	/**
+	 * Never decodes on the UI thread: a bitmap not yet in memory is shown as placeholder and delivered later,
+	 * if the view is then still bound to the same data. Until then, the thumbnail embedded in the file is shown, if there is one.
+	 * It is read in its own stage ahead of every decode, so it also shows up for images whose decode is dropped while flinging.
+	 */
+	private void bindBitmap(SelecatorViewHolder holder, Data data, int position) {
+		ThumbnailImageView imageView = holder.getImageView();
+		CachedBitmapLoader loader = cachedBitmapLoader.getNow(null);
+		Optional<Bitmap> cachedBitmap = loader == null ? null : loader.peek(data.imageFileName());
+		if (cachedBitmap != null) {
+			showBitmap(imageView, cachedBitmap);
+			return;
+		}
+		Optional<CachedBitmapLoader.Preview> cachedPreview = loader == null ? null : loader.peekPreview(data.imageFileName());
+		if (cachedPreview != null && cachedPreview.isPresent()) {
+			showPreview(imageView, cachedPreview.get());
+		} else {
+			showPlaceholder(imageView);
+		}
+		if (loader == null) {
+			cachedBitmapLoader.thenAccept(l -> onUiThreadRunner.accept(() -> {
+				if (data.equals(currentImageBindings.get(imageView))) {
+					bindBitmap(holder, data, holder.getBindingAdapterPosition());
+				}
+			}));
+		} else {
+			if (cachedPreview == null) {
+				holder.setPendingPreview(decodeScheduler.schedulePreview(data, () ->
+						loader.loadPreview(data.imageFileName()).ifPresent(preview -> onUiThreadRunner.accept(() -> {
+							if (data.equals(currentImageBindings.get(imageView)) && loader.peek(data.imageFileName()) == null) {
+								showPreview(imageView, preview);
+							}
+						}))));
+			}
+			holder.setPendingLoad(decodeScheduler.schedule(data, position, () -> {
+				loader.load(data.imageFileName());
+				onUiThreadRunner.accept(() -> {
+					if (data.equals(currentImageBindings.get(imageView))) {
+						bindBitmap(holder, data, holder.getBindingAdapterPosition());
+					}
+				});
+			}));
+		}
+	}
+
+	private void toggleSelection(Data data) {
+		if (!selection.remove(data)) {
+			selection.add(data);
+		}
+		int index = dataSet.indexOf(data);
+		if (index != SortedList.INVALID_POSITION) {
+			notifyItemChanged(index);
+		}
+	}
+
+	public boolean isSelected(Data data) {
+		return selection.contains(data);
+	}
+
+	/**
+	 * @return the selected data, newest first
+	 */
+	public List<Data> getSelection() {
+		List<Data> selected = new ArrayList<>(selection);
+		selected.sort(Comparator.comparingLong(Data::timestamp).reversed());
+		return selected;
+	}
+
+	/**
+	 * Selects the data once it was added, e.g. an image whose move failed and that is therefore restored
+	 */
+	public void select(Data data) {
+		runAfterPendingUpdates(() -> {
+			int index = dataSet.indexOf(data);
+			if (index != SortedList.INVALID_POSITION && selection.add(data)) {
+				notifyItemChanged(index);
+			}
+		});
+	}
+
+	public void clearSelection() {
+		List<Data> previouslySelected = new ArrayList<>(selection);
+		selection.clear();
+		for (Data data : previouslySelected) {
+			int index = dataSet.indexOf(data);
+			if (index != SortedList.INVALID_POSITION) {
+				notifyItemChanged(index);
+			}
+		}
+	}
+
+	/**
+	 * To be called on the UI thread whenever the list scrolled by the given amount.
+	 */
+	public void onScrolled(int dy) {
+		LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+		if (layoutManager == null) {
+			return;
+		}
+		int firstVisiblePosition = layoutManager.findFirstVisibleItemPosition();
+		int lastVisiblePosition = layoutManager.findLastVisibleItemPosition();
+		if (firstVisiblePosition == RecyclerView.NO_POSITION) {
+			return;
+		}
+		boolean scrollingDown = dy == 0 ? decodeScheduler.isScrollingDown() : dy > 0;
+		if (decodeScheduler.updateViewport(firstVisiblePosition, lastVisiblePosition, scrollingDown, dataSet::indexOf)) {
+			prefetchAhead();
+		}
+	}
+
+	private void prefetchAhead() {
+		CachedBitmapLoader loader = cachedBitmapLoader.getNow(null);
+		if (loader == null) {
+			return;
+		}
+		int from;
+		int to;
+		if (decodeScheduler.isScrollingDown()) {
+			from = decodeScheduler.getLastVisiblePosition() + 1;
+			to = Math.min(dataSet.size() - 1, decodeScheduler.getLastVisiblePosition() + decodeScheduler.getPrefetchWindow());
+		} else {
+			from = Math.max(0, decodeScheduler.getFirstVisiblePosition() - decodeScheduler.getPrefetchWindow());
+			to = decodeScheduler.getFirstVisiblePosition() - 1;
+		}
+		for (int position = from; position <= to; position++) {
+			Data data = dataSet.get(position);
+			if (loader.peek(data.imageFileName()) == null && !decodeScheduler.isQueued(data)) {
+				decodeScheduler.schedule(data, position, () -> {
+					if (loader.isSystemLowOnMemory()) {
+						Log.d(SelecatorRecyclerViewAdapter.class.getName(), "System is low on memory, not prefetching " + data.imageFileName());
+					} else {
+						loader.load(data.imageFileName());
+					}
+				});
+			}
+		}
+	}
+
+	public void onDestroyView() {
+		//synchronously, as the dismiss listener is only called later, when the executors the pages use are already shut down
+		new ArrayList<>(openFullscreenDialogs.keySet()).forEach(dialog -> {
+			openFullscreenDialogs.remove(dialog).run();
+			dialog.dismiss();
+		});
+		decodeScheduler.shutdown();
+		fullscreenDecodeExecutor.shutdown();
+	}
+
+	private void showPlaceholder(AppCompatImageView imageView) {
+		//keeps the not yet loaded images from collapsing, otherwise all of them would be bound at once
+		imageView.setMinimumHeight(recyclerView.getWidth() * PLACEHOLDER_HEIGHT_RATIO_PERCENT / 100);
+		imageView.setImageBitmap(null);
+	}
+
+	private static void showPreview(ThumbnailImageView imageView, CachedBitmapLoader.Preview preview) {
+		imageView.setMinimumHeight(0);
+		imageView.setImageBitmap(preview.bitmap(), preview.rotationDegrees());
+	}
+
+	private void showBitmap(AppCompatImageView imageView, Optional<Bitmap> bitmap) {
+		imageView.setMinimumHeight(0);
+		imageView.setImageBitmap(bitmap.orElse(null));
+		if (bitmap.isPresent()) {
+			stopMeasuringTimeToFirstThumbnail();
+		}
+	}
+
+	/**
+	 * Measures the time from now until the first thumbnail is shown, e.g. when starting to load a directory
+	 */
+	public void startMeasuringTimeToFirstThumbnail() {
+		timeToFirstThumbnailStartNanos.set(System.nanoTime());
+	}
+
+	private void stopMeasuringTimeToFirstThumbnail() {
+		long startNanos = timeToFirstThumbnailStartNanos.getAndSet(0);
+		if (startNanos != 0) {
+			Log.i("Performance", "Time to first thumbnail was " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+		}
+	}
+
+	@Override
+	public void onViewRecycled(@NonNull SelecatorViewHolder holder) {
+		super.onViewRecycled(holder);
+		holder.cancelPendingLoad();
+		//releases the bitmap, so it can be collected once it is evicted from the cache
+		holder.getImageView().setImageBitmap(null);
+	}
+
 	@Override
 	public int getItemCount() {
 		return dataSet.size();
@@ -102,8 +349,25 @@ public class SelecatorRecyclerViewAdapter extends RecyclerView.Adapter<Selecator
 	}
 
 	public void addData(Data data) {
-		cachedBitmapLoader.thenAccept(loader -> loader.suggestCache(data.imageFileName()));
-		onUiThreadRunner.accept(() -> dataSet.add(data));
+		pendingUpdates.add(new PendingUpdate(data, true));
+		scheduleFlushOfPendingUpdates();
+	}
+
+	/**
+	 * Queues all changes, so they are applied in one coalesced update of the list
+	 */
+	public void updateData(Collection<Data> toRemove, Collection<Data> toAdd) {
+		if (toRemove.isEmpty() && toAdd.isEmpty()) {
+			return;
+		}
+		if (!toRemove.isEmpty()) {
+			List<Data> removed = List.copyOf(toRemove);
+			cachedBitmapLoader.thenAccept(loader -> removed.forEach(data -> loader.suggestRemoveFromCache(data.imageFileName())));
+			removed.forEach(data -> screenSizedBitmapLoader.suggestRemoveFromCache(path.get().resolve(data.imageFileName()).toFile()));
+			removed.forEach(data -> pendingUpdates.add(new PendingUpdate(data, false)));
+		}
+		toAdd.forEach(data -> pendingUpdates.add(new PendingUpdate(data, true)));
+		scheduleFlushOfPendingUpdates();
 	}
 
 	public Data getData(int index) {
@@ -114,13 +378,28 @@ public class SelecatorRecyclerViewAdapter extends RecyclerView.Adapter<Selecator
 		return dataSet.indexOf(data);
 	}
 
+	/**
+	 * @return the index of the first image older than the given time, or the item count if there is none
+	 */
+	public int indexOfFirstOlderThan(long timestamp) {
+		return timestampIndex.indexOfFirstOlderThan(timestamp);
+	}
+
+	/**
+	 * @return the index of the first image not newer than the given time, or the item count if there is none
+	 */
+	public int indexOfFirstNotNewerThan(long timestamp) {
+		return timestampIndex.indexOfFirstNotNewerThan(timestamp);
+	}
+
 	public void removeData(Data data) {
 		cachedBitmapLoader.thenAccept(loader -> loader.suggestRemoveFromCache(data.imageFileName()));
-		onUiThreadRunner.accept(() -> dataSet.remove(data));
+		pendingUpdates.add(new PendingUpdate(data, false));
+		scheduleFlushOfPendingUpdates();
 	}
 
 	public void scrollTo(Data data) {
-		onUiThreadRunner.accept(() -> {
+		runAfterPendingUpdates(() -> {
 			int index = dataSet.indexOf(data);
 			if (index >= 0) {
 				recyclerView.scrollToPosition(index);
@@ -128,31 +407,146 @@ public class SelecatorRecyclerViewAdapter extends RecyclerView.Adapter<Selecator
 		});
 	}
 
-	private void showImageFullscreen(String fileName) {
+	/**
+	 * Runs the action on the UI thread, once all changes queued so far are applied to the list
+	 */
+	private void runAfterPendingUpdates(Runnable action) {
+		actionsAfterPendingUpdates.add(action);
+		scheduleFlushOfPendingUpdates();
+	}
+
+	private void scheduleFlushOfPendingUpdates() {
+		if (!flushOfPendingUpdatesScheduled.getAndSet(true)) {
+			recyclerView.postOnAnimation(this::flushPendingUpdates);
+		}
+	}
+
+	/**
+	 * Applies all queued changes on the UI thread within one frame, consecutive additions in bulk
+	 */
+	private void flushPendingUpdates() {
+		flushOfPendingUpdatesScheduled.set(false);
+		List<Data> toAdd = new ArrayList<>();
+		dataSet.beginBatchedUpdates();
+		try {
+			PendingUpdate update;
+			while ((update = pendingUpdates.poll()) != null) {
+				if (update.add()) {
+					toAdd.add(update.data());
+				} else {
+					if (!toAdd.isEmpty()) {
+						dataSet.addAll(toAdd);
+						toAdd.clear();
+					}
+					decodeScheduler.cancel(update.data());
+					selection.remove(update.data());
+					dataSet.remove(update.data());
+				}
+			}
+			if (!toAdd.isEmpty()) {
+				dataSet.addAll(toAdd);
+			}
+		} finally {
+			dataSet.endBatchedUpdates();
+			timestampIndex.invalidate();
+		}
+		Runnable action;
+		while ((action = actionsAfterPendingUpdates.poll()) != null) {
+			action.run();
+		}
+	}
+
+	private void showFullscreen(Data data) {
+		if (FileSuffixHelper.hasAVideoSuffix(data.imageFileName())) {
+			showVideoFullscreen(data.imageFileName());
+		} else {
+			showImagesFullscreen(data);
+		}
+	}
+
+	/**
+	 * Shows all images of this side in a pager, starting with the given one
+	 */
+	private void showImagesFullscreen(Data data) {
+		Dialog builder = createFullscreenDialog();
+		List<Data> pages = new ArrayList<>(dataSet.size());
+		for (int i = 0; i < dataSet.size(); i++) {
+			pages.add(dataSet.get(i));
+		}
+		FullscreenPagerAdapter pagerAdapter = new FullscreenPagerAdapter(context, pages, path.get(),
+				() -> new FullscreenImageView(context, screenSizedBitmapLoader, metadataStore, fullscreenDecodeExecutor, onUiThreadRunner),
+				screenSizedBitmapLoader, this::peekListBitmap, page -> {
+			if (FileSuffixHelper.hasAVideoSuffix(page.imageFileName())) {
+				showVideoFullscreen(page.imageFileName());
+			} else {
+				builder.dismiss();
+			}
+		});
+		RecyclerView pager = new RecyclerView(context);
+		LinearLayoutManager layoutManager = new LinearLayoutManager(context, RecyclerView.HORIZONTAL, false);
+		pager.setLayoutManager(layoutManager);
+		PagerSnapHelper snapHelper = new PagerSnapHelper();
+		snapHelper.attachToRecyclerView(pager);
+		pager.setAdapter(pagerAdapter);
+		int position = Math.max(0, pagerAdapter.indexOf(data));
+		layoutManager.scrollToPosition(position);
+		pagerAdapter.prefetchAround(position);
+		pager.addOnScrollListener(new RecyclerView.OnScrollListener() {
+			@Override
+			public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+				if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+					View page = snapHelper.findSnapView(layoutManager);
+					if (page != null) {
+						pagerAdapter.prefetchAround(layoutManager.getPosition(page));
+					}
+				}
+			}
+		});
+		builder.addContentView(pager, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+		//recycles the pages, which releases their bitmaps
+		showFullscreenDialog(builder, () -> {
+			pager.setAdapter(null);
+			screenSizedBitmapLoader.clear();
+		});
+	}
+
+	private void showVideoFullscreen(String fileName) {
+		Dialog builder = createFullscreenDialog();
+		VideoView videoView = new VideoView(context);
+		videoView.setVideoURI(Uri.fromFile(path.get().resolve(fileName).toFile()));
+		videoView.setLayoutParams(buildCenteringRelativeLayout());
+		videoView.start();
+		videoView.setOnClickListener(v -> builder.dismiss());
+		builder.addContentView(wrapInRelativeLayout(videoView), buildCenteringRelativeLayout());
+		showFullscreenDialog(builder, videoView::stopPlayback);
+	}
+
+	private Dialog createFullscreenDialog() {
 		Dialog builder = new Dialog(context, android.R.style.Theme_Light);
 		builder.requestWindowFeature(Window.FEATURE_NO_TITLE);
 		builder.getWindow().setBackgroundDrawable(new ColorDrawable(Color.argb(200, 0, 0, 0)));
-		builder.setOnDismissListener(dialogInterface -> {
-		});
+		return builder;
+	}
 
-		View contentView = createFullscreenContentView(fileName);
-		contentView.setOnClickListener(v -> builder.dismiss());
-		builder.addContentView(wrapInRelativeLayout(contentView), buildCenteringRelativeLayout());
-		builder.show();
+	/**
+	 * @param onDismissed releases what the dialog showed
+	 */
+	private void showFullscreenDialog(Dialog dialog, Runnable onDismissed) {
+		openFullscreenDialogs.put(dialog, onDismissed);
+		dialog.setOnDismissListener(dialogInterface -> {
+			Runnable release = openFullscreenDialogs.remove(dialog);
+			if (release != null) {
+				release.run();
+			}
+		});
+		dialog.show();
 	}
 
-	private View createFullscreenContentView(String fileName) {
-		if (FileSuffixHelper.hasAVideoSuffix(fileName)) {
-			VideoView videoView = new VideoView(context);
-			videoView.setVideoURI(Uri.fromFile(path.get().resolve(fileName).toFile()));
-			videoView.setLayoutParams(buildCenteringRelativeLayout());
-			videoView.start();
-			return videoView;
-		} else {
-			PhotoView imageView = new PhotoView(context);
-			imageView.setImageURI(Uri.fromFile(path.get().resolve(fileName).toFile()));
-			return imageView;
-		}
+	@Nullable
+	private Bitmap peekListBitmap(String fileName) {
+		CachedBitmapLoader loader = cachedBitmapLoader.getNow(null);
+		Optional<Bitmap> bitmap = loader == null ? null : loader.peek(fileName);
+		return bitmap == null ? null : bitmap.orElse(null);
 	}
 
 	private RelativeLayout wrapInRelativeLayout(View view) {
@@ -167,98 +561,48 @@ public class SelecatorRecyclerViewAdapter extends RecyclerView.Adapter<Selecator
 		return layoutParams;
 	}
 
+	private record PendingUpdate(Data data, boolean add) {
+	}
+
 	public static class SelecatorViewHolder extends RecyclerView.ViewHolder {
 
-		private final AppCompatImageView imageView;
+		private final ThumbnailImageView imageView;
+		private Future<?> pendingPreview;
+		private Future<?> pendingLoad;
 
-		public SelecatorViewHolder(@NonNull AppCompatImageView imageView) {
+		public SelecatorViewHolder(@NonNull ThumbnailImageView imageView) {
 			super(imageView);
 			this.imageView = imageView;
 		}
 
-		public AppCompatImageView getImageView() {
+		public ThumbnailImageView getImageView() {
 			return imageView;
 		}
-	}
 
-	public record Data(String imageFileName, long timestamp) {
-		private static final Pattern nonZeroTimePattern = Pattern.compile(".*[1-9].*");
-		private static final SimpleDateFormat formatter;
-		private static final SimpleDateFormat formatterTz;
-
-		static {
-			formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.US);
-			formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-			formatterTz = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss XXX", Locale.US);
-			formatterTz.setTimeZone(TimeZone.getTimeZone("UTC"));
+		private void setPendingLoad(Future<?> pendingLoad) {
+			this.pendingLoad = pendingLoad;
 		}
 
-		public Data(File imageFile) {
-			this(imageFile.getName(), getDate(imageFile));
+		private void setPendingPreview(Future<?> pendingPreview) {
+			this.pendingPreview = pendingPreview;
 		}
 
-		private static long getDate(File imageFile) {
-			try {
-				long exifDateTimeOriginal = getExifDateTimeOriginal(new ExifInterface(imageFile));
-				if (exifDateTimeOriginal > 0) {
-					return exifDateTimeOriginal;
-				}
-			} catch (IOException ignored) {
+		private void cancelPendingLoad() {
+			if (pendingPreview != null) {
+				pendingPreview.cancel(false);
+				pendingPreview = null;
 			}
-			return imageFile.lastModified();
-		}
-
-		/**
-		 * This is basically "new ExifInterface(imageFile).getDateTimeOriginal())" but the other method is only available from API-Level 31.
-		 */
-		private static long getExifDateTimeOriginal(ExifInterface exifInterface) {
-			// return exifInterface.getDateTimeOriginal();
-			return parseDateTime(exifInterface.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL),
-					exifInterface.getAttribute(ExifInterface.TAG_SUBSEC_TIME_ORIGINAL),
-					exifInterface.getAttribute(ExifInterface.TAG_OFFSET_TIME_ORIGINAL));
-		}
-
-		private static long parseDateTime(String dateTimeString, String subSecs, String offsetString) {
-			if (dateTimeString == null || !nonZeroTimePattern.matcher(dateTimeString).matches()) {
-				return -1;
+			if (pendingLoad != null) {
+				pendingLoad.cancel(false);
+				pendingLoad = null;
 			}
+		}
+	}
 
-			ParsePosition pos = new ParsePosition(0);
-			try {
-				// The exif field is in local time. Parsing it as if it is UTC will yield time
-				// since 1/1/1970 local time
-				Date datetime;
-				synchronized (formatter) {
-					datetime = formatter.parse(dateTimeString, pos);
-				}
-
-				if (offsetString != null) {
-					dateTimeString = dateTimeString + " " + offsetString;
-					ParsePosition position = new ParsePosition(0);
-					synchronized (formatterTz) {
-						datetime = formatterTz.parse(dateTimeString, position);
-					}
-				}
+	public record Data(String imageFileName, long timestamp) {
 
-				if (datetime == null) {
-					return -1;
-				}
-				long msecs = datetime.getTime();
-
-				if (subSecs != null) {
-					try {
-						long sub = Long.parseLong(subSecs);
-						while (sub > 1000) {
-							sub /= 10;
-						}
-						msecs += sub;
-					} catch (NumberFormatException ignored) {
-					}
-				}
-				return msecs;
-			} catch (IllegalArgumentException e) {
-				return -1;
-			}
+		public Data(File imageFile, ImageMetadataStore metadataStore) {
+			this(imageFile.getName(), metadataStore.get(imageFile).timestamp());
 		}
 
 		public Instant time() {
@@ -0,0 +1,96 @@
+package ch.laurinmurer.selecator;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.RectF;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.widget.AppCompatImageView;
+import androidx.core.content.ContextCompat;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shows a thumbnail and, for videos, a play icon on top of it. The icon is drawn by the view,
+ * so the thumbnail itself does not need to be copied to paint it in.
+ */
+public class ThumbnailImageView extends AppCompatImageView {
+	private final Drawable playOverlay;
+	private boolean playOverlayShown;
+
+	public ThumbnailImageView(@NonNull Context context) {
+		super(context);
+		this.playOverlay = requireNonNull(ContextCompat.getDrawable(context, R.drawable.play));
+	}
+
+	public void setPlayOverlayShown(boolean playOverlayShown) {
+		if (this.playOverlayShown != playOverlayShown) {
+			this.playOverlayShown = playOverlayShown;
+			invalidate();
+		}
+	}
+
+	/**
+	 * Shows the bitmap rotated while drawing it, so it does not need to be copied to rotate it
+	 *
+	 * @param rotationDegrees clockwise, a multiple of 90
+	 */
+	public void setImageBitmap(Bitmap bitmap, int rotationDegrees) {
+		if (rotationDegrees == 0) {
+			setImageBitmap(bitmap);
+		} else {
+			setImageDrawable(new RotatedBitmapDrawable(getResources(), bitmap, rotationDegrees));
+		}
+	}
+
+	@Override
+	protected void onDraw(@NonNull Canvas canvas) {
+		super.onDraw(canvas);
+		if (playOverlayShown && getDrawable() != null) {
+			int drawableSize = Math.min(getWidth(), getHeight()) * 3 / 4;
+			int left = (getWidth() - drawableSize) / 2;
+			int top = (getHeight() - drawableSize) / 2;
+			playOverlay.setBounds(left, top, drawableSize + left, drawableSize + top);
+			playOverlay.draw(canvas);
+		}
+	}
+
+	private static class RotatedBitmapDrawable extends BitmapDrawable {
+		private final int rotationDegrees;
+		private final boolean swapSides;
+		private final RectF unrotatedBounds = new RectF();
+
+		private RotatedBitmapDrawable(Resources resources, Bitmap bitmap, int rotationDegrees) {
+			super(resources, bitmap);
+			this.rotationDegrees = rotationDegrees;
+			this.swapSides = rotationDegrees % 180 != 0;
+		}
+
+		@Override
+		public int getIntrinsicWidth() {
+			return swapSides ? super.getIntrinsicHeight() : super.getIntrinsicWidth();
+		}
+
+		@Override
+		public int getIntrinsicHeight() {
+			return swapSides ? super.getIntrinsicWidth() : super.getIntrinsicHeight();
+		}
+
+		@Override
+		public void draw(@NonNull Canvas canvas) {
+			float centerX = getBounds().exactCenterX();
+			float centerY = getBounds().exactCenterY();
+			float halfWidth = (swapSides ? getBounds().height() : getBounds().width()) / 2f;
+			float halfHeight = (swapSides ? getBounds().width() : getBounds().height()) / 2f;
+			unrotatedBounds.set(centerX - halfWidth, centerY - halfHeight, centerX + halfWidth, centerY + halfHeight);
+			int saveCount = canvas.save();
+			canvas.rotate(rotationDegrees, centerX, centerY);
+			canvas.drawBitmap(getBitmap(), null, unrotatedBounds, getPaint());
+			canvas.restoreToCount(saveCount);
+		}
+	}
+}
@@ -4,10 +4,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
 
-import androidx.exifinterface.media.ExifInterface;
-
 import java.io.File;
-import java.io.IOException;
 import java.util.Optional;
 
 public class BitmapLoader {
@@ -15,9 +12,11 @@ public class BitmapLoader {
 	private BitmapLoader() {
 	}
 
-	public static Optional<Bitmap> fromFile(File image, int maxWidth) {
-		BitmapFactory.Options bounds = loadBounds(image);
-		int sampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, maxWidth, 1);
+	/**
+	 * @param metadata of the image, so its header does not need to be read again
+	 */
+	public static Optional<Bitmap> fromFile(File image, ImageMetadata metadata, int maxWidth) {
+		int sampleSize = calculateInSampleSize(metadata.width(), metadata.height(), maxWidth, 1);
 
 		BitmapFactory.Options options = new BitmapFactory.Options();
 		options.inSampleSize = sampleSize;
@@ -26,54 +25,14 @@ public class BitmapLoader {
 			return Optional.empty();
 		}
 
-		int orientation = loadExifOrientation(image);
-		Matrix matrix = new Matrix();
-
-		Bitmap bitmap;
-		if ((orientation == ExifInterface.ORIENTATION_ROTATE_180)) {
-			matrix.postRotate(180);
-			bitmap = Bitmap.createBitmap(bitmapPhoto, 0, 0,
-					bitmapPhoto.getWidth(), bitmapPhoto.getHeight(), matrix,
-					true);
-
-		} else if (orientation == ExifInterface.ORIENTATION_ROTATE_90) {
-			matrix.postRotate(90);
-			bitmap = Bitmap.createBitmap(bitmapPhoto, 0, 0,
-					bitmapPhoto.getWidth(), bitmapPhoto.getHeight(), matrix,
-					true);
-
-		} else if (orientation == ExifInterface.ORIENTATION_ROTATE_270) {
-			matrix.postRotate(270);
-			bitmap = Bitmap.createBitmap(bitmapPhoto, 0, 0,
-					bitmapPhoto.getWidth(), bitmapPhoto.getHeight(), matrix,
-					true);
-
-		} else {
-			matrix.postRotate(0);
-			bitmap = Bitmap.createBitmap(bitmapPhoto, 0, 0,
-					bitmapPhoto.getWidth(), bitmapPhoto.getHeight(), null,
-					true);
-
+		int rotationDegrees = metadata.rotationDegrees();
+		if (rotationDegrees == 0) {
+			//no need to copy it
+			return Optional.of(bitmapPhoto);
 		}
-
-		return Optional.of(bitmap);
-	}
-
-	private static int loadExifOrientation(File image) {
-		ExifInterface exif;
-		try {
-			exif = new ExifInterface(image);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-		return exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, 1);
-	}
-
-	private static BitmapFactory.Options loadBounds(File image) {
-		BitmapFactory.Options options = new BitmapFactory.Options();
-		options.inJustDecodeBounds = true;
-		BitmapFactory.decodeFile(image.getPath(), options);
-		return options;
+		Matrix matrix = new Matrix();
+		matrix.setRotate(rotationDegrees);
+		return Optional.of(Bitmap.createBitmap(bitmapPhoto, 0, 0, bitmapPhoto.getWidth(), bitmapPhoto.getHeight(), matrix, true));
 	}
 
 	public static int calculateInSampleSize(int rawWidth, int rawHeight, int reqWidth, int reqHeight) {
@@ -1,112 +1,179 @@
 package ch.laurinmurer.selecator.helper;
 
 import static android.content.Context.ACTIVITY_SERVICE;
-import static java.util.Objects.requireNonNull;
 
 import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.drawable.Drawable;
-import android.media.MediaMetadataRetriever;
+import android.graphics.BitmapFactory;
 import android.util.Log;
+import android.util.LruCache;
 
-import androidx.core.content.ContextCompat;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.file.Path;
 import java.util.Optional;
-import java.util.WeakHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
-import ch.laurinmurer.selecator.R;
-
 public class CachedBitmapLoader {
-	private static final int MIN_FREE_HEAP_SPACE_MB = 10;
+	/**
+	 * Enough for the embedded thumbnails (usually 160x120) of a few screens
+	 */
+	private static final int PREVIEW_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+	private static final int EMPTY_PREVIEW_SIZE = 1;
 	private final AtomicReference<Path> basePath;
 	private final int maxWidth;
-	private final WeakHashMap<String, Optional<Bitmap>> cache = new WeakHashMap<>();
-	private final ExecutorService cacheLoadExecutor;
+	private final MemoryBitmapCache memoryCache;
+	private final LruCache<String, Optional<Preview>> previewCache = new LruCache<>(PREVIEW_CACHE_SIZE_BYTES) {
+		@Override
+		protected int sizeOf(@NonNull String filename, @NonNull Optional<Preview> preview) {
+			return preview.map(p -> p.bitmap().getAllocationByteCount()).orElse(EMPTY_PREVIEW_SIZE);
+		}
+	};
+	private final Map<String, CompletableFuture<Optional<Bitmap>>> loadsInProgress = new ConcurrentHashMap<>();
 	private final ActivityManager activityManager;
-	private final Context context;
+	private final DiskBitmapCache diskCache;
+	private final ImageMetadataStore metadataStore;
+	private final ImageDecoderLoader.BitmapMode bitmapMode;
 
-	public CachedBitmapLoader(AtomicReference<Path> basePath, int maxWidth, Context context) {
+	public CachedBitmapLoader(AtomicReference<Path> basePath, int maxWidth, Context context, ImageMetadataStore metadataStore) {
 		this.basePath = basePath;
 		this.maxWidth = maxWidth;
-		this.context = context;
+		this.metadataStore = metadataStore;
 		this.activityManager = (ActivityManager) context.getSystemService(ACTIVITY_SERVICE);
-		this.cacheLoadExecutor = Executors.newSingleThreadExecutor(runnable -> {
-			Thread thread = new Thread(runnable);
-			thread.setDaemon(true);
-			thread.setName(CachedBitmapLoader.class.getName() + "-for-" + this.basePath.get().getFileName());
-			thread.setPriority(Thread.MIN_PRIORITY);
-			return thread;
-		});
+		this.bitmapMode = ImageDecoderLoader.BitmapMode.forMemoryClass(activityManager);
+		this.memoryCache = MemoryBitmapCache.forMemoryClass(activityManager);
+		this.diskCache = DiskBitmapCache.getInstance(context);
 	}
 
-	public Optional<Bitmap> load(String filename) {
-		return cache.computeIfAbsent(filename, f -> {
-			if (FileSuffixHelper.hasAVideoSuffix(f)) {
-				return retrieveVideoFrameFromVideo(basePath.get().resolve(f).toString()).map(bitmap ->
-						overlayDrawable(bitmap, requireNonNull(ContextCompat.getDrawable(context, R.drawable.play))));
-			} else {
-				return BitmapLoader.fromFile(basePath.get().resolve(f).toFile(), maxWidth);
-			}
-		});
+	/**
+	 * Only looks into the memory cache, so it is cheap enough for the UI thread.
+	 *
+	 * @return null if the bitmap is not loaded yet
+	 */
+	@Nullable
+	public Optional<Bitmap> peek(String filename) {
+		return memoryCache.get(filename);
 	}
 
-	public static Optional<Bitmap> retrieveVideoFrameFromVideo(String videoPath) {
-		try (MediaMetadataRetriever mediaMetadataRetriever = new MediaMetadataRetriever()) {
-			mediaMetadataRetriever.setDataSource(videoPath);
-			return Optional.ofNullable(mediaMetadataRetriever.getFrameAtTime());
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+	/**
+	 * Like peek, but for the low resolution preview
+	 *
+	 * @return null if the preview is not loaded yet
+	 */
+	@Nullable
+	public Optional<Preview> peekPreview(String filename) {
+		return previewCache.get(filename);
 	}
 
-	private static Bitmap overlayDrawable(Bitmap bitmap, Drawable squaredDrawable) {
-		int drawableSize = Math.min(bitmap.getWidth(), bitmap.getHeight()) * 3 / 4;
-		int left = (bitmap.getWidth() - drawableSize) / 2;
-		int top = (bitmap.getHeight() - drawableSize) / 2;
-		squaredDrawable.setBounds(left, top, drawableSize + left, drawableSize + top);
-
-		Bitmap combinedBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
-		Canvas canvas = new Canvas(combinedBitmap);
+	/**
+	 * Reads the thumbnail embedded in the EXIF data with one seek to the location found when reading the metadata,
+	 * which is much faster than decoding the image. It is not rotated, to save the copy.
+	 *
+	 * @return empty if the file has no embedded thumbnail
+	 */
+	public Optional<Preview> loadPreview(String filename) {
+		Optional<Preview> cachedPreview = previewCache.get(filename);
+		if (cachedPreview != null) {
+			return cachedPreview;
+		}
+		File file = basePath.get().resolve(filename).toFile();
+		Optional<Preview> preview = Optional.empty();
+		ImageMetadata metadata = metadataStore.get(file);
+		if (metadata.hasThumbnail()) {
+			try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+				byte[] thumbnail = new byte[metadata.thumbnailLength()];
+				input.seek(metadata.thumbnailOffset());
+				input.readFully(thumbnail);
+				preview = Optional.ofNullable(BitmapFactory.decodeByteArray(thumbnail, 0, thumbnail.length))
+						.map(bitmap -> new Preview(bitmap, metadata.rotationDegrees()));
+			} catch (IOException | RuntimeException e) {
+				Log.d(CachedBitmapLoader.class.getName(), "Could not read embedded thumbnail of " + file, e);
+			}
+		}
+		previewCache.put(filename, preview);
+		return preview;
+	}
 
-		canvas.drawBitmap(bitmap, 0, 0, null);
-		squaredDrawable.draw(canvas);
+	/**
+	 * Loads the bitmap on the calling thread. Concurrent calls for the same file wait for the first one instead of decoding twice.
+	 * Files failing to decode are cached as empty.
+	 */
+	public Optional<Bitmap> load(String filename) {
+		Optional<Bitmap> cachedInMemory = memoryCache.get(filename);
+		if (cachedInMemory != null) {
+			return cachedInMemory;
+		}
+		CompletableFuture<Optional<Bitmap>> newLoad = new CompletableFuture<>();
+		CompletableFuture<Optional<Bitmap>> runningLoad = loadsInProgress.putIfAbsent(filename, newLoad);
+		if (runningLoad != null) {
+			return runningLoad.join();
+		}
+		try {
+			File file = basePath.get().resolve(filename).toFile();
+			Optional<Bitmap> bitmap = diskCache.get(file, maxWidth, bitmapMode);
+			if (bitmap.isEmpty()) {
+				bitmap = decodeQuietly(file);
+				bitmap.ifPresent(b -> diskCache.put(file, maxWidth, b));
+			}
+			memoryCache.put(filename, bitmap);
+			if (bitmap.isPresent()) {
+				previewCache.remove(filename);
+			}
+			newLoad.complete(bitmap);
+			return bitmap;
+		} catch (RuntimeException e) {
+			newLoad.completeExceptionally(e);
+			throw e;
+		} finally {
+			loadsInProgress.remove(filename, newLoad);
+		}
+	}
 
-		return combinedBitmap;
+	private Optional<Bitmap> decodeQuietly(File file) {
+		try {
+			return decode(file);
+		} catch (RuntimeException e) {
+			Log.e(CachedBitmapLoader.class.getName(), "Failed to decode " + file, e);
+			return Optional.empty();
+		}
 	}
 
-	public void suggestCache(String filename) {
-		cacheLoadExecutor.submit(() -> {
-			if (isSystemLowOnMemory()) {
-				Log.d(CachedBitmapLoader.class.getName(), "System is low on memory, not caching " + filename);
-			} else if (getFreeHeapSpaceMB() <= MIN_FREE_HEAP_SPACE_MB) {
-				Log.d(CachedBitmapLoader.class.getName(), "Heap is low on memory, not caching " + filename);
-			} else {
-				load(filename);
+	private Optional<Bitmap> decode(File file) {
+		if (FileSuffixHelper.hasAVideoSuffix(file.getName())) {
+			return VideoFrameLoader.fromFile(file, maxWidth);
+		} else {
+			try {
+				return Optional.of(ImageDecoderLoader.fromFile(file, maxWidth, bitmapMode));
+			} catch (IOException e) {
+				//the more lenient BitmapFactory may still manage to decode it
+				Log.w(CachedBitmapLoader.class.getName(), "ImageDecoder could not decode " + file + ", falling back to BitmapFactory", e);
+				return BitmapLoader.fromFile(file, metadataStore.get(file), maxWidth);
 			}
-		});
+		}
 	}
 
-	private boolean isSystemLowOnMemory() {
+	public boolean isSystemLowOnMemory() {
 		ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
 		activityManager.getMemoryInfo(memoryInfo);
 		return memoryInfo.lowMemory;
 	}
 
-	private static long getFreeHeapSpaceMB() {
-		final Runtime runtime = Runtime.getRuntime();
-		final long usedMemInMB = runtime.totalMemory() - runtime.freeMemory();
-		final long maxHeapSizeInMB = runtime.maxMemory();
-		return (maxHeapSizeInMB - usedMemInMB) / 1024 / 1024;
+	public void suggestRemoveFromCache(String filename) {
+		memoryCache.remove(filename);
+		previewCache.remove(filename);
 	}
 
-	public void suggestRemoveFromCache(String filename) {
-		cache.remove(filename);
+	/**
+	 * @param rotationDegrees clockwise, by which the bitmap has to be rotated to be shown upright
+	 */
+	public record Preview(Bitmap bitmap, int rotationDegrees) {
 	}
 }
@@ -0,0 +1,205 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Moves a file to another volume, where it cannot simply be renamed: it is copied channel to channel into a hidden part file
+ * next to the target, which is renamed to the target once complete, and only then the source is deleted.
+ * <p>
+ * Each move is recorded in a journal until it is done, so a move interrupted e.g. by the app being killed can be resumed later.
+ */
+public class CrossVolumeMover {
+	private static final int JOURNAL_FORMAT_VERSION = 1;
+	private static final String JOURNAL_SUFFIX = ".journal";
+	private static final String PART_SUFFIX = ".part";
+	/**
+	 * Small enough to report the progress regularly
+	 */
+	private static final long CHUNK_SIZE = 8 * 1024 * 1024;
+	private final File journalDirectory;
+
+	/**
+	 * @param journalDirectory where the moves in progress are recorded
+	 */
+	public CrossVolumeMover(File journalDirectory) {
+		this.journalDirectory = journalDirectory;
+	}
+
+	/**
+	 * @param onBytesCopied gets the number of bytes copied so far, after each chunk
+	 */
+	public void move(Path source, Path target, LongConsumer onBytesCopied) throws IOException {
+		long time1 = System.currentTimeMillis();
+		JournalEntry entry = new JournalEntry(source.toAbsolutePath(), target.toAbsolutePath(), Files.size(source), Files.getLastModifiedTime(source).toMillis());
+		Path partFile = toPartFile(target);
+		File journalFile = toJournalFile(target);
+		JournalEntry previousEntry = readJournal(journalFile);
+		if (!entry.equals(previousEntry)) {
+			//the part file does not belong to this source (anymore)
+			Files.deleteIfExists(partFile);
+			writeJournal(journalFile, entry);
+		}
+		long resumedAt;
+		try {
+			resumedAt = copy(source, partFile, entry.size(), onBytesCopied);
+			Files.setLastModifiedTime(partFile, FileTime.fromMillis(entry.lastModified()));
+			Files.move(partFile, target);
+		} catch (IOException | RuntimeException e) {
+			//a failed move is given up, only an interrupted one (i.e. the app being killed) is left to be resumed
+			discard(partFile, journalFile, e);
+			throw e;
+		}
+		Files.delete(source);
+		deleteJournal(journalFile);
+		long time2 = System.currentTimeMillis();
+		Log.i("Performance", "Copying " + (entry.size() - resumedAt) / 1024 + "kB of " + source.getFileName() + " to another volume took " + (time2 - time1) + "ms");
+	}
+
+	/**
+	 * Finishes or cleans up the moves recorded in the journal, e.g. after the app was killed in the middle of one
+	 *
+	 * @param onMoved gets the source and target of each move that was finished
+	 */
+	public void resumeInterruptedMoves(BiConsumer<Path, Path> onMoved) {
+		File[] journalFiles = journalDirectory.listFiles((dir, name) -> name.endsWith(JOURNAL_SUFFIX));
+		if (journalFiles == null) {
+			return;
+		}
+		for (File journalFile : journalFiles) {
+			JournalEntry entry = readJournal(journalFile);
+			if (entry == null) {
+				deleteJournal(journalFile);
+				continue;
+			}
+			Log.i(CrossVolumeMover.class.getName(), "Resuming interrupted move of " + entry.source() + " to " + entry.target());
+			try {
+				if (Files.exists(entry.source()) && Files.exists(entry.target())) {
+					//interrupted after the rename, only the source is left to delete
+					if (!FileContentComparator.filesMismatch(entry.source(), entry.target())) {
+						Files.delete(entry.source());
+						onMoved.accept(entry.source(), entry.target());
+					}
+					Files.deleteIfExists(toPartFile(entry.target()));
+					deleteJournal(journalFile);
+				} else if (Files.exists(entry.source())) {
+					move(entry.source(), entry.target(), bytesCopied -> {
+					});
+					onMoved.accept(entry.source(), entry.target());
+				} else {
+					//the source is gone, nothing left to move
+					Files.deleteIfExists(toPartFile(entry.target()));
+					deleteJournal(journalFile);
+				}
+			} catch (IOException | RuntimeException e) {
+				Log.w(CrossVolumeMover.class.getName(), "Could not resume move of " + entry.source() + " to " + entry.target() + ", giving it up", e);
+				discard(toPartFile(entry.target()), journalFile, e);
+			}
+		}
+	}
+
+	/**
+	 * Continues where a previous copy into the part file stopped
+	 *
+	 * @return the number of bytes that were already copied before
+	 */
+	private static long copy(Path source, Path partFile, long size, LongConsumer onBytesCopied) throws IOException {
+		try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ);
+			 FileChannel output = FileChannel.open(partFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+			long position = output.size();
+			if (position > size) {
+				output.truncate(0);
+				position = 0;
+			}
+			long resumedAt = position;
+			output.position(position);
+			while (position < size) {
+				long transferred = input.transferTo(position, Math.min(CHUNK_SIZE, size - position), output);
+				if (transferred <= 0) {
+					throw new IOException(source + " got shorter while copying it");
+				}
+				position += transferred;
+				onBytesCopied.accept(position);
+			}
+			output.force(true);
+			return resumedAt;
+		}
+	}
+
+	private static void discard(Path partFile, File journalFile, Exception cause) {
+		try {
+			Files.deleteIfExists(partFile);
+		} catch (IOException e) {
+			cause.addSuppressed(e);
+		}
+		deleteJournal(journalFile);
+	}
+
+	private static Path toPartFile(Path target) {
+		return target.resolveSibling("." + target.getFileName() + PART_SUFFIX);
+	}
+
+	private File toJournalFile(Path target) {
+		if (!journalDirectory.isDirectory() && !journalDirectory.mkdirs()) {
+			Log.w(CrossVolumeMover.class.getName(), "Could not create " + journalDirectory);
+		}
+		String name = UUID.nameUUIDFromBytes(target.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8)).toString();
+		return new File(journalDirectory, name + JOURNAL_SUFFIX);
+	}
+
+	private static void writeJournal(File journalFile, JournalEntry entry) throws IOException {
+		FileOutputStream fileOutput = new FileOutputStream(journalFile);
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput))) {
+			output.writeInt(JOURNAL_FORMAT_VERSION);
+			output.writeUTF(entry.source().toAbsolutePath().toString());
+			output.writeUTF(entry.target().toAbsolutePath().toString());
+			output.writeLong(entry.size());
+			output.writeLong(entry.lastModified());
+			output.flush();
+			//it must be on disk before the copy starts, otherwise a part file could be left behind unnoticed
+			fileOutput.getFD().sync();
+		}
+	}
+
+	private static JournalEntry readJournal(File journalFile) {
+		if (!journalFile.isFile()) {
+			return null;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+			if (input.readInt() != JOURNAL_FORMAT_VERSION) {
+				return null;
+			}
+			return new JournalEntry(Paths.get(input.readUTF()), Paths.get(input.readUTF()), input.readLong(), input.readLong());
+		} catch (IOException e) {
+			Log.w(CrossVolumeMover.class.getName(), "Could not read " + journalFile, e);
+			return null;
+		}
+	}
+
+	private static void deleteJournal(File journalFile) {
+		if (journalFile.exists() && !journalFile.delete()) {
+			Log.w(CrossVolumeMover.class.getName(), "Could not delete " + journalFile);
+		}
+	}
+
+	private record JournalEntry(Path source, Path target, long size, long lastModified) {
+	}
+}
@@ -0,0 +1,73 @@
+package ch.laurinmurer.selecator.helper;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an action once no more requests came in for a while, on its own background thread.
+ * A continuous stream of requests does not postpone it for longer than a maximum delay after the first one.
+ */
+public class Debouncer {
+	private final long debounceMillis;
+	private final long maxDelayMillis;
+	private final Runnable action;
+	private final ScheduledExecutorService executor;
+	private ScheduledFuture<?> pendingRun;
+	private long firstPendingRequestMillis;
+
+	public Debouncer(String threadName, long debounceMillis, long maxDelayMillis, Runnable action) {
+		this.debounceMillis = debounceMillis;
+		this.maxDelayMillis = maxDelayMillis;
+		this.action = action;
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			thread.setName(threadName);
+			return thread;
+		});
+	}
+
+	/**
+	 * @return false if it is shut down, so the caller has to run the action itself
+	 */
+	public synchronized boolean request() {
+		if (executor.isShutdown()) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		if (pendingRun == null) {
+			firstPendingRequestMillis = now;
+		} else {
+			if (now - firstPendingRequestMillis + debounceMillis > maxDelayMillis) {
+				return true;
+			}
+			pendingRun.cancel(false);
+		}
+		pendingRun = executor.schedule(this::run, debounceMillis, TimeUnit.MILLISECONDS);
+		return true;
+	}
+
+	public synchronized void cancel() {
+		if (pendingRun != null) {
+			pendingRun.cancel(false);
+			pendingRun = null;
+		}
+	}
+
+	/**
+	 * Cancels a pending run, later requests are rejected
+	 */
+	public void shutdown() {
+		cancel();
+		executor.shutdown();
+	}
+
+	private void run() {
+		synchronized (this) {
+			pendingRun = null;
+		}
+		action.run();
+	}
+}
@@ -0,0 +1,190 @@
+package ch.laurinmurer.selecator.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs decode work ordered by the distance of its list position to the visible positions:
+ * visible ones first, then the prefetch window ahead of the scroll direction, then the ones behind.
+ * Queued work that got scrolled far away is dropped. Previews run ahead of all of it and are never dropped.
+ * <p>
+ * Scheduling and viewport updates are expected to happen on the UI thread, as the positions are looked up from the list there.
+ *
+ * @param <K> identifies an item of the list, its position may change while it is queued
+ */
+public class DecodeScheduler<K> {
+	private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+	/**
+	 * Ahead of the visible positions, which have priority 0
+	 */
+	private static final int PREVIEW_PRIORITY = -1;
+	private final int prefetchWindow;
+	private final ThreadPoolExecutor executor;
+	private final Map<K, DecodeTask> queuedTasks = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private int firstVisiblePosition = 0;
+	private int lastVisiblePosition = -1;
+	private boolean scrollingDown = true;
+
+	public DecodeScheduler(String name, int prefetchWindow) {
+		this.prefetchWindow = prefetchWindow;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			thread.setName(DecodeScheduler.class.getName() + "-" + threadCount.incrementAndGet() + "-for-" + name);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		});
+	}
+
+	public int getPrefetchWindow() {
+		return prefetchWindow;
+	}
+
+	public int getFirstVisiblePosition() {
+		return firstVisiblePosition;
+	}
+
+	public int getLastVisiblePosition() {
+		return lastVisiblePosition;
+	}
+
+	public boolean isScrollingDown() {
+		return scrollingDown;
+	}
+
+	/**
+	 * Replaces work already queued for the same item.
+	 *
+	 * @return to cancel the work, if it is no more needed
+	 */
+	public Future<?> schedule(K item, int position, Runnable work) {
+		DecodeTask task = new DecodeTask(item, work, priorityOf(position), sequence.incrementAndGet());
+		DecodeTask replacedTask = queuedTasks.get(item);
+		if (replacedTask != null) {
+			replacedTask.cancel(false);
+		}
+		queuedTasks.put(item, task);
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * For cheap work like reading an embedded thumbnail, which runs ahead of all other work, independently of it.
+	 *
+	 * @return to cancel the work, if it is no more needed
+	 */
+	public Future<?> schedulePreview(K item, Runnable work) {
+		DecodeTask task = new DecodeTask(item, work, PREVIEW_PRIORITY, sequence.incrementAndGet());
+		executor.execute(task);
+		return task;
+	}
+
+	public boolean isQueued(K item) {
+		return queuedTasks.containsKey(item);
+	}
+
+	public void cancel(K item) {
+		DecodeTask task = queuedTasks.get(item);
+		if (task != null) {
+			task.cancel(false);
+		}
+	}
+
+	/**
+	 * Re-prioritises all queued work according to the new viewport and drops the work for positions scrolled far away.
+	 * Does nothing if neither the visible positions nor the direction changed, as the scroll listener calls it for every pixel.
+	 *
+	 * @return whether the viewport changed
+	 */
+	public boolean updateViewport(int firstVisiblePosition, int lastVisiblePosition, boolean scrollingDown, ToIntFunction<K> currentPosition) {
+		if (firstVisiblePosition == this.firstVisiblePosition && lastVisiblePosition == this.lastVisiblePosition && scrollingDown == this.scrollingDown) {
+			return false;
+		}
+		this.firstVisiblePosition = firstVisiblePosition;
+		this.lastVisiblePosition = lastVisiblePosition;
+		this.scrollingDown = scrollingDown;
+		List<Runnable> queued = new ArrayList<>();
+		executor.getQueue().drainTo(queued);
+		for (Runnable runnable : queued) {
+			DecodeTask task = (DecodeTask) runnable;
+			if (task.isCancelled()) {
+				continue;
+			}
+			if (task.priority == PREVIEW_PRIORITY) {
+				executor.getQueue().add(task);
+				continue;
+			}
+			int priority = priorityOf(currentPosition.applyAsInt(task.item));
+			if (priority > prefetchWindow * 2) {
+				task.cancel(false);
+			} else {
+				task.priority = priority;
+				executor.getQueue().add(task);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the distance to the viewport, where positions behind the scroll direction count as further away
+	 */
+	private int priorityOf(int position) {
+		if (position < 0) {
+			return Integer.MAX_VALUE;
+		} else if (position >= firstVisiblePosition && position <= lastVisiblePosition) {
+			return 0;
+		} else if (position > lastVisiblePosition) {
+			return position - lastVisiblePosition + (scrollingDown ? 0 : prefetchWindow);
+		} else {
+			return firstVisiblePosition - position + (scrollingDown ? prefetchWindow : 0);
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private class DecodeTask extends FutureTask<Void> implements Comparable<DecodeTask> {
+		private final K item;
+		private final long sequence;
+		private volatile int priority;
+
+		private DecodeTask(K item, Runnable work, int priority, long sequence) {
+			super(work, null);
+			this.item = item;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void run() {
+			queuedTasks.remove(item, this);
+			super.run();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			queuedTasks.remove(item, this);
+			executor.remove(this);
+			return super.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public int compareTo(DecodeTask other) {
+			int byPriority = Integer.compare(priority, other.priority);
+			return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.os.FileObserver;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Watches a directory for files being created, written, deleted or moved and reports the names of the changed files
+ * in debounced batches, so a burst of changes (e.g. a sync tool or a series of photos) is handled at once.
+ */
+public class DirectoryWatcher {
+	private static final int EVENTS = FileObserver.CREATE | FileObserver.CLOSE_WRITE | FileObserver.DELETE | FileObserver.MOVED_FROM | FileObserver.MOVED_TO;
+	private static final long DEBOUNCE_MILLIS = 500;
+	/**
+	 * Continuous changes must not postpone reporting forever
+	 */
+	private static final long MAX_DELAY_MILLIS = 3000;
+	private final String name;
+	private final Consumer<Set<String>> onChangedFileNames;
+	private final Debouncer debouncer;
+	private final Set<String> pendingFileNames = new HashSet<>();
+	private File watchedDirectory;
+	private FileObserver fileObserver;
+
+	/**
+	 * @param onChangedFileNames gets the names of the changed files (on a background thread)
+	 */
+	public DirectoryWatcher(String name, Consumer<Set<String>> onChangedFileNames) {
+		this.name = name;
+		this.onChangedFileNames = onChangedFileNames;
+		this.debouncer = new Debouncer(DirectoryWatcher.class.getName() + "-for-" + name, DEBOUNCE_MILLIS, MAX_DELAY_MILLIS, this::report);
+	}
+
+	/**
+	 * Stops watching the previous directory, if it is another one
+	 */
+	public synchronized void watch(File directory) {
+		if (directory.equals(watchedDirectory)) {
+			return;
+		}
+		stopWatching();
+		watchedDirectory = directory;
+		fileObserver = new FileObserver(directory, EVENTS) {
+			@Override
+			public void onEvent(int event, @Nullable String fileName) {
+				if (fileName != null) {
+					onChange(fileName);
+				}
+			}
+		};
+		fileObserver.startWatching();
+		Log.i(DirectoryWatcher.class.getName(), "Watching " + directory + " for " + name);
+	}
+
+	public synchronized void stopWatching() {
+		if (fileObserver != null) {
+			fileObserver.stopWatching();
+			fileObserver = null;
+		}
+		watchedDirectory = null;
+		pendingFileNames.clear();
+		debouncer.cancel();
+	}
+
+	public void shutdown() {
+		stopWatching();
+		debouncer.shutdown();
+	}
+
+	private synchronized void onChange(String fileName) {
+		pendingFileNames.add(fileName);
+		debouncer.request();
+	}
+
+	private void report() {
+		Set<String> changedFileNames;
+		synchronized (this) {
+			changedFileNames = Set.copyOf(pendingFileNames);
+			pendingFileNames.clear();
+		}
+		if (!changedFileNames.isEmpty()) {
+			onChangedFileNames.accept(changedFileNames);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Persistent thumbnail store in the app's cache directory. Entries are keyed by path, size, last modification and target width
+ * of the original file, so a changed original simply misses and its outdated thumbnail ages out of the LRU order.
+ */
+public class DiskBitmapCache {
+	private static final String DIRECTORY_NAME = "thumbnails";
+	private static final String FILE_SUFFIX = ".webp";
+	private static final long MAX_SIZE_BYTES = 200L * 1024 * 1024;
+	private static final int COMPRESS_QUALITY = 80;
+	/**
+	 * To be increased whenever the thumbnails are created differently, so old ones are not used anymore (2: videos without play icon)
+	 */
+	private static final int KEY_VERSION = 2;
+	private static DiskBitmapCache instance;
+
+	private final File directory;
+	private final long maxSizeBytes;
+	/**
+	 * In access order, so the first entry is always the least recently used one
+	 */
+	private final LinkedHashMap<String, Long> sizeByKey = new LinkedHashMap<>(16, 0.75f, true);
+	private long currentSizeBytes;
+	private boolean indexLoaded;
+
+	DiskBitmapCache(File directory, long maxSizeBytes) {
+		this.directory = directory;
+		this.maxSizeBytes = maxSizeBytes;
+	}
+
+	/**
+	 * Both sides share one instance, as they share the directory on disk.
+	 */
+	public static synchronized DiskBitmapCache getInstance(Context context) {
+		if (instance == null) {
+			instance = new DiskBitmapCache(new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME), MAX_SIZE_BYTES);
+		}
+		return instance;
+	}
+
+	/**
+	 * @param bitmapMode the same as for decoding the original, so a cached thumbnail takes no more memory than a new one
+	 */
+	public Optional<Bitmap> get(File original, int width, ImageDecoderLoader.BitmapMode bitmapMode) {
+		String key = createKey(original, width);
+		synchronized (this) {
+			loadIndexIfNeeded();
+			if (sizeByKey.get(key) == null) {
+				return Optional.empty();
+			}
+		}
+		File cacheFile = toCacheFile(key);
+		Bitmap bitmap;
+		try {
+			bitmap = ImageDecoderLoader.fromFile(cacheFile, width, bitmapMode);
+		} catch (IOException e) {
+			Log.w(DiskBitmapCache.class.getName(), "Failed to read cached thumbnail of " + original, e);
+			remove(key);
+			return Optional.empty();
+		}
+		//the modification time persists the LRU order over process restarts
+		//noinspection ResultOfMethodCallIgnored
+		cacheFile.setLastModified(System.currentTimeMillis());
+		return Optional.of(bitmap);
+	}
+
+	public void put(File original, int width, Bitmap bitmap) {
+		String key = createKey(original, width);
+		File cacheFile = toCacheFile(key);
+		File temporaryFile = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+		synchronized (this) {
+			loadIndexIfNeeded();
+		}
+		try (FileOutputStream outputStream = new FileOutputStream(temporaryFile)) {
+			if (!bitmap.compress(Bitmap.CompressFormat.WEBP_LOSSY, COMPRESS_QUALITY, outputStream)) {
+				throw new IOException("Could not compress thumbnail of " + original);
+			}
+		} catch (IOException e) {
+			Log.w(DiskBitmapCache.class.getName(), "Failed to cache thumbnail of " + original, e);
+			//noinspection ResultOfMethodCallIgnored
+			temporaryFile.delete();
+			return;
+		}
+		if (!temporaryFile.renameTo(cacheFile)) {
+			//noinspection ResultOfMethodCallIgnored
+			temporaryFile.delete();
+			return;
+		}
+		synchronized (this) {
+			Long previousSize = sizeByKey.put(key, cacheFile.length());
+			currentSizeBytes += cacheFile.length() - (previousSize == null ? 0 : previousSize);
+			trimToSize();
+		}
+	}
+
+	private synchronized void remove(String key) {
+		Long size = sizeByKey.remove(key);
+		if (size != null) {
+			currentSizeBytes -= size;
+		}
+		//noinspection ResultOfMethodCallIgnored
+		toCacheFile(key).delete();
+	}
+
+	private void trimToSize() {
+		Iterator<Map.Entry<String, Long>> leastRecentlyUsedFirst = sizeByKey.entrySet().iterator();
+		while (currentSizeBytes > maxSizeBytes && leastRecentlyUsedFirst.hasNext()) {
+			Map.Entry<String, Long> eldest = leastRecentlyUsedFirst.next();
+			//noinspection ResultOfMethodCallIgnored
+			toCacheFile(eldest.getKey()).delete();
+			currentSizeBytes -= eldest.getValue();
+			leastRecentlyUsedFirst.remove();
+		}
+	}
+
+	private void loadIndexIfNeeded() {
+		if (indexLoaded) {
+			return;
+		}
+		indexLoaded = true;
+		long time1 = System.currentTimeMillis();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			Log.w(DiskBitmapCache.class.getName(), "Could not create " + directory);
+			return;
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.stream(files)
+				.map(file -> new IndexEntry(file, file.lastModified(), file.length()))
+				.sorted(Comparator.comparingLong(IndexEntry::lastModified))
+				.forEach(entry -> {
+					String fileName = entry.file().getName();
+					if (fileName.endsWith(FILE_SUFFIX)) {
+						sizeByKey.put(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()), entry.size());
+						currentSizeBytes += entry.size();
+					} else {
+						//leftover of an interrupted write
+						//noinspection ResultOfMethodCallIgnored
+						entry.file().delete();
+					}
+				});
+		trimToSize();
+		long time2 = System.currentTimeMillis();
+		Log.i("Performance", "Loading thumbnail cache index of " + sizeByKey.size() + " entries took " + (time2 - time1) + "ms");
+	}
+
+	private File toCacheFile(String key) {
+		return new File(directory, key + FILE_SUFFIX);
+	}
+
+	private static String createKey(File original, int width) {
+		String identity = KEY_VERSION + "|" + original.getAbsolutePath() + "|" + original.length() + "|" + original.lastModified() + "|" + width;
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8));
+			StringBuilder key = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private record IndexEntry(File file, long lastModified, long size) {
+	}
+}
@@ -0,0 +1,94 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compares the content of two files through file channels and direct buffers, a long at a time.
+ * Files that differ are usually already told apart by their size, first or last chunk, so those are checked before the full scan.
+ */
+public class FileContentComparator {
+	private static final int QUICK_CHECK_CHUNK_SIZE = 64 * 1024;
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private FileContentComparator() {
+	}
+
+	/**
+	 * Similar to java.nio.file.Files.mismatch() - but this is not (yet) available
+	 */
+	public static boolean filesMismatch(Path path1, Path path2) throws IOException {
+		long size = Files.size(path1);
+		if (size != Files.size(path2)) {
+			return true;
+		}
+		long time1 = System.currentTimeMillis();
+		try (FileChannel channel1 = FileChannel.open(path1, StandardOpenOption.READ);
+			 FileChannel channel2 = FileChannel.open(path2, StandardOpenOption.READ)) {
+			boolean mismatch;
+			if (size <= 2L * QUICK_CHECK_CHUNK_SIZE) {
+				mismatch = rangesMismatch(channel1, channel2, 0, size, BUFFER_SIZE);
+			} else {
+				mismatch = rangesMismatch(channel1, channel2, 0, QUICK_CHECK_CHUNK_SIZE, QUICK_CHECK_CHUNK_SIZE)
+						|| rangesMismatch(channel1, channel2, size - QUICK_CHECK_CHUNK_SIZE, size, QUICK_CHECK_CHUNK_SIZE)
+						|| rangesMismatch(channel1, channel2, QUICK_CHECK_CHUNK_SIZE, size - QUICK_CHECK_CHUNK_SIZE, BUFFER_SIZE);
+			}
+			long time2 = System.currentTimeMillis();
+			Log.i("Performance", "Comparing " + size / 1024 + "kB of " + path1.getFileName() + " took " + (time2 - time1) + "ms");
+			return mismatch;
+		}
+	}
+
+	private static boolean rangesMismatch(FileChannel channel1, FileChannel channel2, long from, long to, int bufferSize) throws IOException {
+		int capacity = (int) Math.min(bufferSize, to - from);
+		if (capacity <= 0) {
+			return false;
+		}
+		ByteBuffer buffer1 = ByteBuffer.allocateDirect(capacity);
+		ByteBuffer buffer2 = ByteBuffer.allocateDirect(capacity);
+		long position = from;
+		while (position < to) {
+			int length = (int) Math.min(capacity, to - position);
+			if (!readFully(channel1, buffer1, position, length) || !readFully(channel2, buffer2, position, length)) {
+				return true;//one file got shorter meanwhile
+			}
+			if (buffersMismatch(buffer1, buffer2, length)) {
+				return true;
+			}
+			position += length;
+		}
+		return false;
+	}
+
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+		buffer.clear().limit(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				return false;
+			}
+		}
+		buffer.flip();
+		return true;
+	}
+
+	private static boolean buffersMismatch(ByteBuffer buffer1, ByteBuffer buffer2, int length) {
+		int i = 0;
+		for (; i + Long.BYTES <= length; i += Long.BYTES) {
+			if (buffer1.getLong(i) != buffer2.getLong(i)) {
+				return true;
+			}
+		}
+		for (; i < length; i++) {
+			if (buffer1.get(i) != buffer2.get(i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
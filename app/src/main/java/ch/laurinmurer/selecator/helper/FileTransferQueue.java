@@ -0,0 +1,152 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Moves files in the background, a few at once, so a slow move (e.g. a copy to another volume) does not block the UI.
+ * Moves of the same file name run one after the other, in the order they were submitted.
+ */
+public class FileTransferQueue {
+	private static final int MAX_PARALLEL_TRANSFERS = 2;
+	/**
+	 * Smaller files are copied fast enough to not need a progress
+	 */
+	private static final long MIN_SIZE_FOR_PROGRESS = 16 * 1024 * 1024;
+	private static final AtomicBoolean interruptedTransfersResumed = new AtomicBoolean();
+	private final Consumer<Runnable> onUiThreadRunner;
+	private final CrossVolumeMover crossVolumeMover;
+	private final ExecutorService executor;
+	private final Map<String, CompletableFuture<Void>> lastTransferByFileName = new HashMap<>();
+
+	/**
+	 * @param onUiThreadRunner the callbacks of a transfer are run with
+	 * @param journalDirectory where moves to another volume are recorded until they are done
+	 */
+	public FileTransferQueue(Consumer<Runnable> onUiThreadRunner, File journalDirectory) {
+		this.onUiThreadRunner = onUiThreadRunner;
+		this.crossVolumeMover = new CrossVolumeMover(journalDirectory);
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(MAX_PARALLEL_TRANSFERS, runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			thread.setName(FileTransferQueue.class.getName() + "-" + threadCount.incrementAndGet());
+			return thread;
+		});
+	}
+
+	/**
+	 * Finishes the moves that were interrupted, e.g. by the app being killed, once per start of the app
+	 *
+	 * @param onMoved gets the source and target of each move that was finished (on a background thread)
+	 */
+	public void resumeInterruptedTransfers(BiConsumer<Path, Path> onMoved) {
+		if (!interruptedTransfersResumed.getAndSet(true)) {
+			executor.execute(() -> crossVolumeMover.resumeInterruptedMoves(onMoved));
+		}
+	}
+
+	/**
+	 * @param onMoved           is called after the file was moved
+	 * @param onFailed          is called if the file could not be moved
+	 * @param onProgressPercent is called while a big file is copied to another volume
+	 */
+	public synchronized void move(Path source, Path target, Runnable onMoved, Consumer<IOException> onFailed, IntConsumer onProgressPercent) {
+		String fileName = String.valueOf(target.getFileName());
+		CompletableFuture<Void> previousTransfer = lastTransferByFileName.getOrDefault(fileName, CompletableFuture.completedFuture(null));
+		CompletableFuture<Void> transfer = previousTransfer.thenRunAsync(() -> {
+			try {
+				long time1 = System.currentTimeMillis();
+				moveFile(source, target, onProgressPercent);
+				long time2 = System.currentTimeMillis();
+				Log.i("Performance", "Moving " + source.getFileName() + " took " + (time2 - time1) + "ms");
+				onUiThreadRunner.accept(onMoved);
+			} catch (IOException e) {
+				onUiThreadRunner.accept(() -> onFailed.accept(e));
+			} catch (RuntimeException e) {
+				onUiThreadRunner.accept(() -> onFailed.accept(new IOException(e)));
+			}
+		}, executor);
+		lastTransferByFileName.put(fileName, transfer);
+		transfer.whenComplete((result, exception) -> {
+			synchronized (this) {
+				lastTransferByFileName.remove(fileName, transfer);
+			}
+		});
+	}
+
+	/**
+	 * Lets the submitted transfers finish, but does not accept new ones
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private void moveFile(Path source, Path target, IntConsumer onProgressPercent) throws IOException {
+		if (source.equals(target)) {
+			return;
+		}
+		try {
+			renameWithoutReplacing(source, target);
+		} catch (FileAlreadyExistsException e) {
+			if (!FileContentComparator.filesMismatch(source, target)) {
+				Files.delete(source); //The image already exists at the target
+			} else {
+				throw e;
+			}
+		} catch (AtomicMoveNotSupportedException anotherVolume) {
+			long size = Files.size(source);
+			AtomicInteger reportedPercent = new AtomicInteger(-1);
+			crossVolumeMover.move(source, target, bytesCopied -> {
+				int percent = (int) (bytesCopied * 100 / size);
+				if (size >= MIN_SIZE_FOR_PROGRESS && reportedPercent.getAndSet(percent) != percent) {
+					onUiThreadRunner.accept(() -> onProgressPercent.accept(percent));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Unlike rename(2), never replaces a file that already exists at the target
+	 *
+	 * @throws FileAlreadyExistsException      if there is already a file at the target
+	 * @throws AtomicMoveNotSupportedException if the target is on another volume, so the file cannot simply be renamed
+	 */
+	private static void renameWithoutReplacing(Path source, Path target) throws IOException {
+		boolean linked;
+		try {
+			//creating a hard link fails atomically if the target exists
+			Files.createLink(target, source);
+			linked = true;
+		} catch (FileAlreadyExistsException e) {
+			throw e;
+		} catch (UnsupportedOperationException | IOException noHardLink) {
+			//e.g. another volume, or a file system without hard links like the ones of SD cards
+			linked = false;
+		}
+		if (linked) {
+			Files.delete(source);
+		} else if (!Files.getFileStore(source).equals(Files.getFileStore(target.getParent()))) {
+			throw new AtomicMoveNotSupportedException(source.toString(), target.toString(), "The target is on another volume");
+		} else {
+			//without options, it throws a FileAlreadyExistsException instead of replacing the target
+			Files.move(source, target);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.app.ActivityManager;
+import android.graphics.Bitmap;
+import android.graphics.ImageDecoder;
+import android.util.Size;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Decodes images with ImageDecoder straight to the target width (not only to a power of two of it),
+ * with the EXIF orientation already applied.
+ */
+public class ImageDecoderLoader {
+
+	private ImageDecoderLoader() {
+	}
+
+	public static Bitmap fromFile(File image, int maxWidth, BitmapMode bitmapMode) throws IOException {
+		return fromFile(image, maxWidth, Integer.MAX_VALUE, bitmapMode);
+	}
+
+	/**
+	 * Scales the image down to fit into the given size, keeping its aspect ratio
+	 */
+	public static Bitmap fromFile(File image, int maxWidth, int maxHeight, BitmapMode bitmapMode) throws IOException {
+		return ImageDecoder.decodeBitmap(ImageDecoder.createSource(image), (decoder, info, source) -> {
+			Size size = info.getSize();
+			double scale = Math.min((double) maxWidth / size.getWidth(), (double) maxHeight / size.getHeight());
+			if (scale < 1) {
+				decoder.setTargetSize(Math.max(1, (int) Math.round(size.getWidth() * scale)), Math.max(1, (int) Math.round(size.getHeight() * scale)));
+			}
+			if (bitmapMode == BitmapMode.HARDWARE) {
+				decoder.setAllocator(ImageDecoder.ALLOCATOR_HARDWARE);
+			} else {
+				decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+				//RGB_565 for images without transparency
+				decoder.setMemorySizePolicy(ImageDecoder.MEMORY_POLICY_LOW_RAM);
+			}
+			//e.g. a photo still being written is shown as far as it is
+			decoder.setOnPartialImageListener(e -> true);
+		});
+	}
+
+	public enum BitmapMode {
+		/**
+		 * Kept in graphics memory only, so they do not count against the heap
+		 */
+		HARDWARE,
+		/**
+		 * Half the memory of ARGB_8888, for devices with little memory per app
+		 */
+		RGB_565;
+
+		private static final int MIN_MEMORY_CLASS_FOR_HARDWARE = 192;
+
+		public static BitmapMode forMemoryClass(ActivityManager activityManager) {
+			if (activityManager.isLowRamDevice() || activityManager.getMemoryClass() < MIN_MEMORY_CLASS_FOR_HARDWARE) {
+				return RGB_565;
+			}
+			return HARDWARE;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package ch.laurinmurer.selecator.helper;
+
+import androidx.exifinterface.media.ExifInterface;
+
+/**
+ * What is read from a file's header in one go
+ *
+ * @param width           as stored in the file, before applying the orientation, or 0 if unknown
+ * @param height          as stored in the file, before applying the orientation, or 0 if unknown
+ * @param orientation     one of ExifInterface.ORIENTATION_*
+ * @param timestamp       when the image was captured or, if unknown, when the file was last modified
+ * @param thumbnailOffset where the compressed thumbnail embedded in the EXIF data starts in the file
+ * @param thumbnailLength of the embedded thumbnail, or 0 if there is none
+ */
+public record ImageMetadata(int width, int height, int orientation, long timestamp, long thumbnailOffset, int thumbnailLength) {
+
+	public static ImageMetadata withoutHeader(long lastModified) {
+		return new ImageMetadata(0, 0, ExifInterface.ORIENTATION_NORMAL, lastModified, 0, 0);
+	}
+
+	public boolean hasThumbnail() {
+		return thumbnailLength > 0;
+	}
+
+	public int rotationDegrees() {
+		return switch (orientation) {
+			case ExifInterface.ORIENTATION_ROTATE_90 -> 90;
+			case ExifInterface.ORIENTATION_ROTATE_180 -> 180;
+			case ExifInterface.ORIENTATION_ROTATE_270 -> 270;
+			default -> 0;
+		};
+	}
+}
@@ -0,0 +1,146 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
+
+/**
+ * Reads dimensions, orientation, capture time and the location of the embedded thumbnail of an image with a single file open.
+ */
+public class ImageMetadataReader {
+	private static final int HEADER_BUFFER_SIZE = 64 * 1024;
+	/**
+	 * The bounds are usually found within the first few kilobytes, but an EXIF block with thumbnail may come first
+	 */
+	private static final int HEADER_MARK_LIMIT = 1024 * 1024;
+	private static final Pattern nonZeroTimePattern = Pattern.compile(".*[1-9].*");
+	private static final SimpleDateFormat formatter;
+	private static final SimpleDateFormat formatterTz;
+
+	static {
+		formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.US);
+		formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+		formatterTz = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss XXX", Locale.US);
+		formatterTz.setTimeZone(TimeZone.getTimeZone("UTC"));
+	}
+
+	private ImageMetadataReader() {
+	}
+
+	public static ImageMetadata read(File file) {
+		long lastModified = file.lastModified();
+		if (FileSuffixHelper.hasAVideoSuffix(file.getName())) {
+			return ImageMetadata.withoutHeader(lastModified);
+		}
+		try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file), HEADER_BUFFER_SIZE)) {
+			inputStream.mark(HEADER_MARK_LIMIT);
+			BitmapFactory.Options bounds = new BitmapFactory.Options();
+			bounds.inJustDecodeBounds = true;
+			BitmapFactory.decodeStream(inputStream, null, bounds);
+			ExifInterface exifInterface;
+			try {
+				inputStream.reset();
+				exifInterface = new ExifInterface(inputStream);
+			} catch (IOException headerTooLong) {
+				//the decoder read beyond the mark, which is rare enough to open the file a second time
+				exifInterface = new ExifInterface(file);
+			}
+			long exifDateTimeOriginal = getExifDateTimeOriginal(exifInterface);
+			long[] thumbnailRange = getCompressedThumbnailRange(exifInterface);
+			return new ImageMetadata(
+					Math.max(0, bounds.outWidth),
+					Math.max(0, bounds.outHeight),
+					exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL),
+					exifDateTimeOriginal > 0 ? exifDateTimeOriginal : lastModified,
+					thumbnailRange == null ? 0 : thumbnailRange[0],
+					thumbnailRange == null ? 0 : (int) thumbnailRange[1]
+			);
+		} catch (IOException | RuntimeException e) {
+			Log.w(ImageMetadataReader.class.getName(), "Could not read metadata of " + file, e);
+			return ImageMetadata.withoutHeader(lastModified);
+		}
+	}
+
+	/**
+	 * So the thumbnail can later be read without parsing the EXIF data again
+	 *
+	 * @return offset and length in the file, or null if there is no compressed thumbnail
+	 */
+	private static long[] getCompressedThumbnailRange(ExifInterface exifInterface) {
+		if (!exifInterface.hasThumbnail() || !exifInterface.isThumbnailCompressed()) {
+			return null;
+		}
+		try {
+			long[] range = exifInterface.getThumbnailRange();
+			return range == null || range[1] <= 0 || range[1] > Integer.MAX_VALUE ? null : range;
+		} catch (IllegalStateException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * This is basically "new ExifInterface(imageFile).getDateTimeOriginal())" but the other method is only available from API-Level 31.
+	 */
+	private static long getExifDateTimeOriginal(ExifInterface exifInterface) {
+		// return exifInterface.getDateTimeOriginal();
+		return parseDateTime(exifInterface.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL),
+				exifInterface.getAttribute(ExifInterface.TAG_SUBSEC_TIME_ORIGINAL),
+				exifInterface.getAttribute(ExifInterface.TAG_OFFSET_TIME_ORIGINAL));
+	}
+
+	private static long parseDateTime(String dateTimeString, String subSecs, String offsetString) {
+		if (dateTimeString == null || !nonZeroTimePattern.matcher(dateTimeString).matches()) {
+			return -1;
+		}
+
+		ParsePosition pos = new ParsePosition(0);
+		try {
+			// The exif field is in local time. Parsing it as if it is UTC will yield time
+			// since 1/1/1970 local time
+			Date datetime;
+			synchronized (formatter) {
+				datetime = formatter.parse(dateTimeString, pos);
+			}
+
+			if (offsetString != null) {
+				dateTimeString = dateTimeString + " " + offsetString;
+				ParsePosition position = new ParsePosition(0);
+				synchronized (formatterTz) {
+					datetime = formatterTz.parse(dateTimeString, position);
+				}
+			}
+
+			if (datetime == null) {
+				return -1;
+			}
+			long msecs = datetime.getTime();
+
+			if (subSecs != null) {
+				try {
+					long sub = Long.parseLong(subSecs);
+					while (sub > 1000) {
+						sub /= 10;
+					}
+					msecs += sub;
+				} catch (NumberFormatException ignored) {
+				}
+			}
+			return msecs;
+		} catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers the metadata of each file, as long as its size and last modification do not change,
+ * so the listing and the thumbnail loading read the header only once.
+ * <p>
+ * The metadata of each directory is persisted in a compact binary index, so it is not read again after a restart either.
+ */
+public class ImageMetadataStore {
+	private static final int INDEX_FORMAT_VERSION = 2;
+	private final File indexDirectory;
+	private final Map<String, DirectoryIndex> indexesByDirectory = new ConcurrentHashMap<>();
+
+	/**
+	 * @param indexDirectory where the index files of all directories are stored
+	 */
+	public ImageMetadataStore(File indexDirectory) {
+		this.indexDirectory = indexDirectory;
+	}
+
+	public ImageMetadata get(File file) {
+		DirectoryIndex index = getIndex(file.getParentFile());
+		String fileName = file.getName();
+		long size = file.length();
+		long lastModified = file.lastModified();
+		Entry entry = index.entriesByFileName.get(fileName);
+		if (entry != null && entry.size() == size && entry.lastModified() == lastModified) {
+			return entry.metadata();
+		}
+		ImageMetadata metadata = ImageMetadataReader.read(file);
+		index.entriesByFileName.put(fileName, new Entry(size, lastModified, metadata));
+		index.dirty.set(true);
+		return metadata;
+	}
+
+	/**
+	 * Writes the index of the directory, if anything changed since it was loaded. Files no more on disk are forgotten.
+	 */
+	public void persist(File directory, Set<String> fileNamesOnDisk) {
+		DirectoryIndex index = getIndex(directory);
+		if (index.entriesByFileName.keySet().retainAll(fileNamesOnDisk)) {
+			index.dirty.set(true);
+		}
+		if (!index.dirty.getAndSet(false)) {
+			return;
+		}
+		long time1 = System.currentTimeMillis();
+		File indexFile = toIndexFile(directory);
+		File temporaryFile = new File(indexDirectory, indexFile.getName() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+			output.writeInt(INDEX_FORMAT_VERSION);
+			Map<String, Entry> entries = Map.copyOf(index.entriesByFileName);
+			output.writeInt(entries.size());
+			for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+				output.writeUTF(entry.getKey());
+				output.writeLong(entry.getValue().size());
+				output.writeLong(entry.getValue().lastModified());
+				output.writeInt(entry.getValue().metadata().width());
+				output.writeInt(entry.getValue().metadata().height());
+				output.writeInt(entry.getValue().metadata().orientation());
+				output.writeLong(entry.getValue().metadata().timestamp());
+				output.writeLong(entry.getValue().metadata().thumbnailOffset());
+				output.writeInt(entry.getValue().metadata().thumbnailLength());
+			}
+		} catch (IOException e) {
+			Log.w(ImageMetadataStore.class.getName(), "Could not write metadata index of " + directory, e);
+			//noinspection ResultOfMethodCallIgnored
+			temporaryFile.delete();
+			index.dirty.set(true);
+			return;
+		}
+		if (!temporaryFile.renameTo(indexFile)) {
+			Log.w(ImageMetadataStore.class.getName(), "Could not replace metadata index of " + directory);
+			index.dirty.set(true);
+		}
+		long time2 = System.currentTimeMillis();
+		Log.i("Performance", "Writing metadata index of " + index.entriesByFileName.size() + " files took " + (time2 - time1) + "ms");
+	}
+
+	private DirectoryIndex getIndex(File directory) {
+		return indexesByDirectory.computeIfAbsent(directory.getAbsolutePath(), d -> loadIndex(directory));
+	}
+
+	private DirectoryIndex loadIndex(File directory) {
+		DirectoryIndex index = new DirectoryIndex();
+		File indexFile = toIndexFile(directory);
+		long time1 = System.currentTimeMillis();
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (input.readInt() != INDEX_FORMAT_VERSION) {
+				return index;
+			}
+			int count = input.readInt();
+			for (int i = 0; i < count; i++) {
+				String fileName = input.readUTF();
+				long size = input.readLong();
+				long lastModified = input.readLong();
+				ImageMetadata metadata = new ImageMetadata(input.readInt(), input.readInt(), input.readInt(), input.readLong(), input.readLong(), input.readInt());
+				index.entriesByFileName.put(fileName, new Entry(size, lastModified, metadata));
+			}
+		} catch (FileNotFoundException e) {
+			return index;
+		} catch (IOException e) {
+			Log.w(ImageMetadataStore.class.getName(), "Could not read metadata index of " + directory, e);
+			index.entriesByFileName.clear();
+			return index;
+		}
+		long time2 = System.currentTimeMillis();
+		Log.i("Performance", "Reading metadata index of " + index.entriesByFileName.size() + " files took " + (time2 - time1) + "ms");
+		return index;
+	}
+
+	private File toIndexFile(File directory) {
+		if (!indexDirectory.isDirectory() && !indexDirectory.mkdirs()) {
+			Log.w(ImageMetadataStore.class.getName(), "Could not create " + indexDirectory);
+		}
+		String name = UUID.nameUUIDFromBytes(directory.getAbsolutePath().getBytes(StandardCharsets.UTF_8)).toString();
+		return new File(indexDirectory, name + ".idx");
+	}
+
+	private static class DirectoryIndex {
+		private final Map<String, Entry> entriesByFileName = new ConcurrentHashMap<>();
+		private final AtomicBoolean dirty = new AtomicBoolean();
+	}
+
+	private record Entry(long size, long lastModified, ImageMetadata metadata) {
+	}
+}
@@ -0,0 +1,97 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.content.Context;
+import android.media.MediaScannerConnection;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Tells the media scanner about changed files in debounced batches, so quickly sorting many images
+ * opens one scanner connection instead of two per image.
+ */
+public class MediaScanNotifier {
+	private static final long DEBOUNCE_MILLIS = 1000;
+	/**
+	 * Sorting without a break must not postpone the scan forever
+	 */
+	private static final long MAX_DELAY_MILLIS = 5000;
+	private final Context context;
+	private final Debouncer debouncer;
+	private final Set<String> pendingPaths = new LinkedHashSet<>();
+	private int requestedPathCount;
+	private int pendingRequestedPathCount;
+	private int scannedPathCount;
+	private int scanCount;
+
+	public MediaScanNotifier(Context context) {
+		this.context = context.getApplicationContext();
+		this.debouncer = new Debouncer(MediaScanNotifier.class.getName(), DEBOUNCE_MILLIS, MAX_DELAY_MILLIS, this::scan);
+	}
+
+	public synchronized void notifyChanged(Collection<String> paths) {
+		if (paths.isEmpty()) {
+			return;
+		}
+		requestedPathCount += paths.size();
+		pendingRequestedPathCount += paths.size();
+		pendingPaths.addAll(paths);
+		if (!debouncer.request()) {
+			//e.g. a move that finished after the view was gone
+			scan();
+		}
+	}
+
+	/**
+	 * Scans the pending paths right away and, from now on, every path as soon as it is requested
+	 */
+	public void shutdown() {
+		debouncer.shutdown();
+		scan();
+	}
+
+	private void scan() {
+		String[] paths;
+		synchronized (this) {
+			paths = pendingPaths.toArray(new String[0]);
+			pendingPaths.clear();
+			pendingRequestedPathCount = 0;
+			if (paths.length == 0) {
+				return;
+			}
+			scannedPathCount += paths.length;
+			scanCount++;
+		}
+		MediaScannerConnection.scanFile(context, paths, null /*mimeTypes*/, (s, uri) -> {
+		});
+		Log.i("Performance", "Scanning " + paths.length + " paths, " + this);
+	}
+
+	/**
+	 * @return how many paths were requested to be scanned, including duplicates
+	 */
+	public synchronized int getRequestedPathCount() {
+		return requestedPathCount;
+	}
+
+	/**
+	 * @return how many scanner connections were saved by collecting the paths, compared to one per requested path
+	 */
+	public synchronized int getCoalescedScanCount() {
+		return requestedPathCount - pendingRequestedPathCount - scanCount;
+	}
+
+	public synchronized int getScanCount() {
+		return scanCount;
+	}
+
+	@NonNull
+	@Override
+	public synchronized String toString() {
+		return "MediaScanNotifier{requested=" + requestedPathCount + ", scanned=" + scannedPathCount + ", scans=" + scanCount + ", coalesced=" + getCoalescedScanCount() + '}';
+	}
+}
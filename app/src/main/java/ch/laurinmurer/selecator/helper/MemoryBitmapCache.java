@@ -0,0 +1,74 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.app.ActivityManager;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Optional;
+
+/**
+ * In-memory LRU cache of decoded bitmaps, limited by the bytes the bitmaps allocate (not by their count).
+ * A file that could not be decoded is remembered as an empty Optional, so it is not decoded again and again.
+ */
+public class MemoryBitmapCache {
+	/**
+	 * Each side gets its own cache, so both together use a quarter of the memory class
+	 */
+	private static final int MEMORY_CLASS_DIVISOR = 8;
+	private static final int EMPTY_ENTRY_SIZE = 1;
+	private final LruCache<String, Optional<Bitmap>> cache;
+
+	public MemoryBitmapCache(int maxSizeBytes) {
+		this.cache = new LruCache<>(maxSizeBytes) {
+			@Override
+			protected int sizeOf(@NonNull String filename, @NonNull Optional<Bitmap> bitmap) {
+				return bitmap.map(Bitmap::getAllocationByteCount).orElse(EMPTY_ENTRY_SIZE);
+			}
+		};
+	}
+
+	public static MemoryBitmapCache forMemoryClass(ActivityManager activityManager) {
+		return new MemoryBitmapCache(activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR);
+	}
+
+	/**
+	 * @return null if there is no entry for this file, an empty Optional if the file could not be decoded
+	 */
+	@Nullable
+	public Optional<Bitmap> get(String filename) {
+		return cache.get(filename);
+	}
+
+	public void put(String filename, Optional<Bitmap> bitmap) {
+		cache.put(filename, bitmap);
+	}
+
+	public void remove(String filename) {
+		cache.remove(filename);
+	}
+
+	public void evictAll() {
+		cache.evictAll();
+	}
+
+	public int hitCount() {
+		return cache.hitCount();
+	}
+
+	public int missCount() {
+		return cache.missCount();
+	}
+
+	public int evictionCount() {
+		return cache.evictionCount();
+	}
+
+	@NonNull
+	@Override
+	public String toString() {
+		return "MemoryBitmapCache{" + cache.size() / 1024 + "/" + cache.maxSize() / 1024 + "kB, hits=" + hitCount() + ", misses=" + missCount() + ", evictions=" + evictionCount() + '}';
+	}
+}
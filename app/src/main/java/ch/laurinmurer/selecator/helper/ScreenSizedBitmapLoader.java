@@ -0,0 +1,158 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.app.ActivityManager;
+import android.graphics.Bitmap;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes images to fit the screen for the fullscreen view and keeps the ones around the shown image in memory,
+ * so paging to a neighbour shows it at once. Bounded to a few screens of bitmaps and a share of the memory class.
+ */
+public class ScreenSizedBitmapLoader {
+	/**
+	 * The lists' caches are idle while the fullscreen view is shown, so it may use as much as both of them
+	 */
+	private static final int MEMORY_CLASS_DIVISOR = 4;
+	private static ScreenSizedBitmapLoader instance;
+	private final int maxWidth;
+	private final int maxHeight;
+	private final ImageDecoderLoader.BitmapMode bitmapMode;
+	private final MemoryBitmapCache cache;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		thread.setName(ScreenSizedBitmapLoader.class.getName());
+		return thread;
+	});
+	/**
+	 * Only accessed on the UI thread
+	 */
+	private final Map<File, CompletableFuture<Optional<Bitmap>>> pendingLoads = new HashMap<>();
+	/**
+	 * Increased by each clear, so a decode still running then does not put its bitmap into the cache afterwards
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+
+	ScreenSizedBitmapLoader(int maxWidth, int maxHeight, ImageDecoderLoader.BitmapMode bitmapMode, int maxSizeBytes) {
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+		this.bitmapMode = bitmapMode;
+		this.cache = new MemoryBitmapCache(maxSizeBytes);
+	}
+
+	/**
+	 * Both sides share one instance, as only one fullscreen view is shown at a time.
+	 *
+	 * @param neighbourCount how many images before and after the shown one are kept in memory, if the memory class allows
+	 */
+	public static synchronized ScreenSizedBitmapLoader getInstance(ActivityManager activityManager, DisplayMetrics displayMetrics, int neighbourCount) {
+		if (instance == null) {
+			ImageDecoderLoader.BitmapMode bitmapMode = ImageDecoderLoader.BitmapMode.forMemoryClass(activityManager);
+			long bytesPerPixel = bitmapMode == ImageDecoderLoader.BitmapMode.RGB_565 ? 2 : 4;
+			long bytesForScreens = displayMetrics.widthPixels * displayMetrics.heightPixels * bytesPerPixel * (2 * neighbourCount + 1);
+			long bytesForMemoryClass = (long) activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+			instance = new ScreenSizedBitmapLoader(displayMetrics.widthPixels, displayMetrics.heightPixels, bitmapMode, (int) Math.min(bytesForScreens, bytesForMemoryClass));
+		}
+		return instance;
+	}
+
+	/**
+	 * Only looks into the memory cache, so it is cheap enough for the UI thread.
+	 *
+	 * @return null if the bitmap is not loaded yet
+	 */
+	@Nullable
+	public Optional<Bitmap> peek(File image) {
+		return cache.get(image.getPath());
+	}
+
+	/**
+	 * To be called on the UI thread. Loads the same image only once, also if it is requested again while it is loading.
+	 */
+	public CompletableFuture<Optional<Bitmap>> load(File image) {
+		Optional<Bitmap> cached = peek(image);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		CompletableFuture<Optional<Bitmap>> pendingLoad = pendingLoads.get(image);
+		if (pendingLoad == null || pendingLoad.isCancelled()) {
+			int loadGeneration = generation.get();
+			pendingLoad = CompletableFuture.supplyAsync(() -> decode(image, loadGeneration), executor);
+			pendingLoads.put(image, pendingLoad);
+		}
+		return pendingLoad;
+	}
+
+	/**
+	 * To be called on the UI thread whenever another image is shown.
+	 * Loads the given images in their order and cancels the loads of images that are not among them anymore.
+	 *
+	 * @param images the shown image first, then its neighbours
+	 */
+	public void prefetch(List<File> images) {
+		for (File pendingImage : new ArrayList<>(pendingLoads.keySet())) {
+			CompletableFuture<Optional<Bitmap>> pendingLoad = pendingLoads.get(pendingImage);
+			if (pendingLoad.isDone() || !images.contains(pendingImage)) {
+				//a load not yet started is skipped by the executor
+				pendingLoad.cancel(false);
+				pendingLoads.remove(pendingImage);
+			}
+		}
+		for (File image : images) {
+			load(image);
+		}
+	}
+
+	/**
+	 * E.g. for a file that was moved away, so another file with the same name is not shown with its bitmap
+	 */
+	public void suggestRemoveFromCache(File image) {
+		cache.remove(image.getPath());
+	}
+
+	/**
+	 * To be called on the UI thread when the fullscreen view is closed, so its bitmaps do not stay in memory
+	 */
+	public void clear() {
+		pendingLoads.values().forEach(pendingLoad -> pendingLoad.cancel(false));
+		pendingLoads.clear();
+		generation.incrementAndGet();
+		cache.evictAll();
+	}
+
+	private Optional<Bitmap> decode(File image, int loadGeneration) {
+		Optional<Bitmap> cached = peek(image);
+		if (cached != null) {
+			return cached;
+		}
+		Optional<Bitmap> bitmap;
+		try {
+			long time1 = System.currentTimeMillis();
+			bitmap = Optional.of(ImageDecoderLoader.fromFile(image, maxWidth, maxHeight, bitmapMode));
+			long time2 = System.currentTimeMillis();
+			Log.i("Performance", "Decoding " + image.getName() + " for the screen took " + (time2 - time1) + "ms");
+		} catch (IOException | RuntimeException e) {
+			Log.w(ScreenSizedBitmapLoader.class.getName(), "Could not decode " + image + " for the screen", e);
+			bitmap = Optional.empty();
+		}
+		if (generation.get() == loadGeneration) {
+			cache.put(image.getPath(), bitmap);
+		}
+		return bitmap;
+	}
+}
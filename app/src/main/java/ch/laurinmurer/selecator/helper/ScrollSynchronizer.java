@@ -4,6 +4,7 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import androidx.appcompat.widget.AppCompatImageView;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -13,7 +14,6 @@ import ch.laurinmurer.selecator.FirstFragmentSide;
 import ch.laurinmurer.selecator.SelecatorRecyclerViewAdapter;
 
 import java.time.Instant;
-import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -21,35 +21,49 @@ import static java.util.Objects.requireNonNull;
 
 public class ScrollSynchronizer {
 	private static final int SECONDS_TO_SYNC_SCROLL = 8;
+	private static final long MILLIS_SCROLLED_FROM_OTHER_SIDE_AFTER_STOP = SECONDS_TO_SYNC_SCROLL * 1000L + 200;
 	private final String sideName;
 	private final RecyclerView recyclerView;
 	private final FirstFragmentSide side;
-	private final List<AtomicReference<Instant>> finishTimesOfSideBeingScrolledFromOtherSide;
+	private final ScrolledFromOtherSide sideScrolledFromOtherSide;
 	private final RecyclerView otherRecyclerView;
 	private final SelecatorRecyclerViewAdapter otherRecyclerViewAdapter;
 	private final FirstFragmentSide otherSide;
 	private final AtomicReference<SelecatorSmoothScroller> otherSideAnimationHolder;
-	private final List<AtomicReference<Instant>> finishTimesOfOtherSideScrollsFromThisSide;
+	private final ScrolledFromOtherSide otherSideScrolledFromThisSide;
 	private final AtomicReference<Integer> otherSideCurrentScrollTarget = new AtomicReference<>();
+	private boolean transmitScrollScheduled;
+	/**
+	 * The scroll is transmitted at most once per frame, no matter how many scroll events arrive in between
+	 */
+	private final Choreographer.FrameCallback transmitScrollFrameCallback = frameTimeNanos -> {
+		transmitScrollScheduled = false;
+		if (!isSideBeingScrolledFromOtherSide()) {
+			transmitScroll();
+		}
+	};
 
-	public ScrollSynchronizer(String sideName, RecyclerView recyclerView, FirstFragmentSide side, List<AtomicReference<Instant>> finishTimesOfSideBeingScrolledFromOtherSide, RecyclerView otherRecyclerView, SelecatorRecyclerViewAdapter otherRecyclerViewAdapter, FirstFragmentSide otherSide, AtomicReference<SelecatorSmoothScroller> otherSideAnimationHolder, List<AtomicReference<Instant>> finishTimesOfOtherSideScrollsFromThisSide) {
+	public ScrollSynchronizer(String sideName, RecyclerView recyclerView, FirstFragmentSide side, ScrolledFromOtherSide sideScrolledFromOtherSide, RecyclerView otherRecyclerView, SelecatorRecyclerViewAdapter otherRecyclerViewAdapter, FirstFragmentSide otherSide, AtomicReference<SelecatorSmoothScroller> otherSideAnimationHolder, ScrolledFromOtherSide otherSideScrolledFromThisSide) {
 		this.sideName = sideName;
 		this.recyclerView = recyclerView;
 		this.side = side;
-		this.finishTimesOfSideBeingScrolledFromOtherSide = finishTimesOfSideBeingScrolledFromOtherSide;
+		this.sideScrolledFromOtherSide = sideScrolledFromOtherSide;
 		this.otherRecyclerView = otherRecyclerView;
 		this.otherRecyclerViewAdapter = otherRecyclerViewAdapter;
 		this.otherSide = otherSide;
 		this.otherSideAnimationHolder = otherSideAnimationHolder;
-		this.finishTimesOfOtherSideScrollsFromThisSide = finishTimesOfOtherSideScrollsFromThisSide;
+		this.otherSideScrolledFromThisSide = otherSideScrolledFromThisSide;
 	}
 
 	@SuppressLint("ClickableViewAccessibility") //Sorry! Because this is an image app, I hope I don't offend anyone
 	public void register() {
 		recyclerView.setOnScrollChangeListener((v, scrollX, scrollY, oldScrollX, oldScrollY) -> {
+			//RecyclerView does not change its scrollY, but reports the scrolled distance as old value
+			side.onScrolled(scrollY - oldScrollY);
 			boolean sideBeingScrolledFromOtherSide = isSideBeingScrolledFromOtherSide();
-			if (!sideBeingScrolledFromOtherSide && scrollY != oldScrollY) {
-				transmitScroll();
+			if (!sideBeingScrolledFromOtherSide && scrollY != oldScrollY && !transmitScrollScheduled) {
+				transmitScrollScheduled = true;
+				Choreographer.getInstance().postFrameCallback(transmitScrollFrameCallback);
 			}
 		});
 		otherRecyclerView.setOnTouchListener((v, event) -> {
@@ -58,63 +72,53 @@ public class ScrollSynchronizer {
 		});
 	}
 
+	/**
+	 * To be called when the views are destroyed, so a scroll transmission already scheduled does not run on them anymore
+	 */
+	public void unregister() {
+		Choreographer.getInstance().removeFrameCallback(transmitScrollFrameCallback);
+		transmitScrollScheduled = false;
+		recyclerView.setOnScrollChangeListener(null);
+		otherRecyclerView.setOnTouchListener(null);
+		Optional.ofNullable(otherSideAnimationHolder.get()).ifPresent(SelecatorSmoothScroller::doStop);
+	}
+
 	private boolean isSideBeingScrolledFromOtherSide() {
-		Instant referenceTime = Instant.now().minusSeconds(SECONDS_TO_SYNC_SCROLL).minusMillis(200);
-		while (!finishTimesOfSideBeingScrolledFromOtherSide.isEmpty()) {
-			AtomicReference<Instant> aFinishTimeReference = finishTimesOfSideBeingScrolledFromOtherSide.get(0);
-			Instant aFinishTime = aFinishTimeReference == null ? null : aFinishTimeReference.get();
-			if (aFinishTime != null && aFinishTime.isBefore(referenceTime)) {
-				finishTimesOfSideBeingScrolledFromOtherSide.remove(aFinishTimeReference);
-			} else {
-				return true;
-			}
-		}
-		return false;
+		return sideScrolledFromOtherSide.isActive();
 	}
 
 	private void transmitScroll() {
 		Optional<TopBottom<View>> sichtbareBilder = getTopAndBottomInFocusArea(recyclerView, 0.35f);
 		if (sichtbareBilder.isPresent()) {
-			TopBottom<Instant> sichtbarerZeitbereich = sichtbareBilder.get()
-					.map(bild -> side.getTimestampForImage((AppCompatImageView) bild));
+			long sichtbarerZeitbereichTop = side.getTimestampForImage((AppCompatImageView) sichtbareBilder.get().top());
+			long sichtbarerZeitbereichBottom = side.getTimestampForImage((AppCompatImageView) sichtbareBilder.get().bottom());
 			Optional<TopBottom<View>> sichtbareBilderAndereSeite = getTopAndBottomInFocusArea(otherRecyclerView, 0.4f);
 			if (sichtbareBilderAndereSeite.isPresent()) {
-				TopBottom<Instant> sichtbarerZeitbereichAndereSeite = sichtbareBilderAndereSeite.get()
-						.map(bild -> otherSide.getTimestampForImage((AppCompatImageView) bild));
-				boolean shouldShowImageFurtherUp = sichtbarerZeitbereichAndereSeite.top().isBefore(sichtbarerZeitbereich.bottom());
-				boolean shouldShowImageFurtherDown = sichtbarerZeitbereich.top().isBefore(sichtbarerZeitbereichAndereSeite.bottom());
+				long sichtbarerZeitbereichAndereSeiteTop = otherSide.getTimestampForImage((AppCompatImageView) sichtbareBilderAndereSeite.get().top());
+				long sichtbarerZeitbereichAndereSeiteBottom = otherSide.getTimestampForImage((AppCompatImageView) sichtbareBilderAndereSeite.get().bottom());
+				boolean shouldShowImageFurtherUp = sichtbarerZeitbereichAndereSeiteTop < sichtbarerZeitbereichBottom;
+				boolean shouldShowImageFurtherDown = sichtbarerZeitbereichTop < sichtbarerZeitbereichAndereSeiteBottom;
 				if (shouldShowImageFurtherDown) {
 					if (((LinearLayoutManager) requireNonNull(recyclerView.getLayoutManager())).findFirstVisibleItemPosition() == 0) {
 						return;//do not scroll down other side if this side is still showing the first element
 					}
-					Instant maxTimeToShow = sichtbarerZeitbereich.top();
-					int indexToScrollTo = 0;
-					Instant timeAtIndex = null;
-					for (; indexToScrollTo < otherRecyclerViewAdapter.getItemCount(); indexToScrollTo++) {
-						timeAtIndex = otherRecyclerViewAdapter.getData(indexToScrollTo).time();
-						if (timeAtIndex.isBefore(maxTimeToShow)) {
-							indexToScrollTo--;
-							break;
-						}
+					long maxTimeToShow = sichtbarerZeitbereichTop;
+					int indexToScrollTo = otherRecyclerViewAdapter.indexOfFirstOlderThan(maxTimeToShow);
+					if (indexToScrollTo < otherRecyclerViewAdapter.getItemCount()) {
+						//the image above the first older one
+						indexToScrollTo--;
 					}
 					Integer currentTarget = otherSideCurrentScrollTarget.get();
 					if (currentTarget == null || currentTarget != indexToScrollTo) {
-						Log.i("DEB", "Will scroll other side of '" + sideName + "' further down to image above the one at " + timeAtIndex + " because topmost is from " + maxTimeToShow);
+						Log.i("DEB", "Will scroll other side of '" + sideName + "' further down to image " + indexToScrollTo + " because topmost is from " + Instant.ofEpochMilli(maxTimeToShow));
 						centerOtherView(indexToScrollTo);
 					}
 				} else if (shouldShowImageFurtherUp) {
-					Instant minTimeToShow = sichtbarerZeitbereich.bottom();
-					int indexToScrollTo = 0;
-					Instant timeAtIndex = null;
-					for (; indexToScrollTo < otherRecyclerViewAdapter.getItemCount(); indexToScrollTo++) {
-						timeAtIndex = otherRecyclerViewAdapter.getData(indexToScrollTo).time();
-						if (!timeAtIndex.isAfter(minTimeToShow)) {
-							break;
-						}
-					}
+					long minTimeToShow = sichtbarerZeitbereichBottom;
+					int indexToScrollTo = otherRecyclerViewAdapter.indexOfFirstNotNewerThan(minTimeToShow);
 					Integer currentTarget = otherSideCurrentScrollTarget.get();
 					if (currentTarget == null || currentTarget != indexToScrollTo) {
-						Log.i("DEB", "Will scroll other side of '" + sideName + "' further up to image of " + timeAtIndex);
+						Log.i("DEB", "Will scroll other side of '" + sideName + "' further up to image " + indexToScrollTo + " because bottommost is from " + Instant.ofEpochMilli(minTimeToShow));
 						centerOtherView(indexToScrollTo);
 					}
 				}
@@ -131,12 +135,28 @@ public class ScrollSynchronizer {
 					int maxIndexesToScroll = Math.max(1, bottomIndex - topIndex) * 2;
 					return childToScrollTo > topIndex - maxIndexesToScroll && childToScrollTo < bottomIndex + maxIndexesToScroll;
 				}).orElse(true);
+		RecyclerView.LayoutManager otherLayoutManager = requireNonNull(otherRecyclerView.getLayoutManager());
 		if (!shouldSmoothScroll) {
 			otherRecyclerView.scrollToPosition(childToScrollTo);
+		} else {
+			SelecatorSmoothScroller runningScroller = otherSideAnimationHolder.get();
+			if (runningScroller != null && runningScroller.isRunning() && otherLayoutManager.findViewByPosition(childToScrollTo) == null
+					&& isInSameDirection(runningScroller.getTargetPosition(), childToScrollTo)) {
+				//the running scroller keeps its speed and looks for the new target, just as it did for the old one.
+				//In the other direction, it would first continue towards its interim target, so a new one is started then
+				runningScroller.setTargetPosition(childToScrollTo);
+				return;
+			}
 		}
-		LinearSmoothScroller smoothScroller = new SelecatorSmoothScroller(otherRecyclerView.getContext(), "other side of " + sideName, finishTimesOfOtherSideScrollsFromThisSide, () -> otherSideCurrentScrollTarget.set(null));
+		SelecatorSmoothScroller smoothScroller = new SelecatorSmoothScroller(otherRecyclerView.getContext(), "other side of " + sideName, otherSideScrolledFromThisSide, () -> otherSideCurrentScrollTarget.set(null));
 		smoothScroller.setTargetPosition(childToScrollTo);
-		requireNonNull(otherRecyclerView.getLayoutManager()).startSmoothScroll(smoothScroller);
+		otherSideAnimationHolder.set(smoothScroller);
+		otherLayoutManager.startSmoothScroll(smoothScroller);
+	}
+
+	private boolean isInSameDirection(int target, int otherTarget) {
+		int firstVisiblePosition = ((LinearLayoutManager) requireNonNull(otherRecyclerView.getLayoutManager())).findFirstVisibleItemPosition();
+		return firstVisiblePosition != RecyclerView.NO_POSITION && (target < firstVisiblePosition) == (otherTarget < firstVisiblePosition);
 	}
 
 	public void centerOtherView(SelecatorRecyclerViewAdapter.Data childToScrollTo) {
@@ -171,24 +191,30 @@ public class ScrollSynchronizer {
 	}
 
 	public static class SelecatorSmoothScroller extends LinearSmoothScroller {
-		private final AtomicReference<Instant> finishTimeReference = new AtomicReference<>();
+		private final ScrolledFromOtherSide otherSideScrolledFromThisSide;
 		/**
 		 * @noinspection unused, FieldCanBeLocal - useful for debugging
 		 */
 		private final String sideName;
 		private final Runnable onStop;
 
-		public SelecatorSmoothScroller(Context context, String sideName, List<AtomicReference<Instant>> finishTimesOfOtherSideScrollsFromThisSide, Runnable onStop) {
+		public SelecatorSmoothScroller(Context context, String sideName, ScrolledFromOtherSide otherSideScrolledFromThisSide, Runnable onStop) {
 			super(context);
 			this.sideName = sideName;
 			this.onStop = onStop;
-			finishTimesOfOtherSideScrollsFromThisSide.add(finishTimeReference);
+			this.otherSideScrolledFromThisSide = otherSideScrolledFromThisSide;
+		}
+
+		@Override
+		protected void onStart() {
+			super.onStart();
+			otherSideScrolledFromThisSide.onScrollerStarted();
 		}
 
 		@Override
 		protected void onStop() {
 			super.onStop();
-			finishTimeReference.set(Instant.now());
+			otherSideScrolledFromThisSide.onScrollerStopped(MILLIS_SCROLLED_FROM_OTHER_SIDE_AFTER_STOP);
 			onStop.run();
 		}
 
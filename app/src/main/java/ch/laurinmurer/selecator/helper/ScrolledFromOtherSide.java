@@ -0,0 +1,37 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells whether a side is being scrolled by the other side, i.e. while a scroller of the other side is running
+ * and until some time after the last one stopped. Lock-free and without allocations, as it is asked on every scroll event.
+ */
+public class ScrolledFromOtherSide {
+	private final AtomicInteger runningScrollers = new AtomicInteger();
+	private final AtomicLong untilUptimeMillis = new AtomicLong();
+
+	public void onScrollerStarted() {
+		runningScrollers.incrementAndGet();
+	}
+
+	public void onScrollerStopped(long stillScrolledForMillis) {
+		long until = SystemClock.uptimeMillis() + stillScrolledForMillis;
+		untilUptimeMillis.accumulateAndGet(until, Math::max);
+		runningScrollers.decrementAndGet();
+	}
+
+	public boolean isActive() {
+		return runningScrollers.get() > 0 || SystemClock.uptimeMillis() < untilUptimeMillis.get();
+	}
+
+	@NonNull
+	@Override
+	public String toString() {
+		return "ScrolledFromOtherSide{runningScrollers=" + runningScrollers.get() + ", untilUptimeMillis=" + untilUptimeMillis.get() + '}';
+	}
+}
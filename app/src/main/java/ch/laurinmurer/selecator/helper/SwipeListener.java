@@ -16,6 +16,8 @@ public class SwipeListener implements View.OnTouchListener {
 	private int mSwipeSlop = -1;
 	private boolean mSwiping = false;
 	private boolean mItemPressed = false;
+	private boolean mLongPressed = false;
+	private Runnable mPendingLongPress;
 
 	public SwipeListener(boolean leftToRight, RecyclerView recyclerView, Consumer<View> action) {
 		this.recyclerView = recyclerView;
@@ -36,8 +38,16 @@ public class SwipeListener implements View.OnTouchListener {
 				}
 				mItemPressed = true;
 				mDownX = event.getX();
+				mLongPressed = false;
+				mPendingLongPress = () -> {
+					mPendingLongPress = null;
+					mLongPressed = true;
+					v.performLongClick();
+				};
+				v.postDelayed(mPendingLongPress, ViewConfiguration.getLongPressTimeout());
 				break;
 			case MotionEvent.ACTION_CANCEL:
+				cancelLongPress(v);
 				v.setAlpha(1);
 				v.setTranslationX(0);
 				mItemPressed = false;
@@ -49,6 +59,7 @@ public class SwipeListener implements View.OnTouchListener {
 				if (!mSwiping) {
 					if ((leftToRight && deltaX > mSwipeSlop) || (!leftToRight && -deltaX > mSwipeSlop)) {
 						mSwiping = true;
+						cancelLongPress(v);
 						recyclerView.requestDisallowInterceptTouchEvent(true);
 //								mBackgroundContainer.showBackground(v.getTop(), v.getHeight());
 					}
@@ -60,6 +71,7 @@ public class SwipeListener implements View.OnTouchListener {
 			}
 			break;
 			case MotionEvent.ACTION_UP: {
+				cancelLongPress(v);
 				// User let go - figure out whether to animate the view out, or back into place
 				if (mSwiping) {
 					float x = event.getX() + v.getTranslationX();
@@ -103,7 +115,7 @@ public class SwipeListener implements View.OnTouchListener {
 								mSwiping = false;
 								recyclerView.setEnabled(true);
 							});
-				} else {
+				} else if (!mLongPressed) {
 					v.performClick();
 				}
 			}
@@ -114,4 +126,11 @@ public class SwipeListener implements View.OnTouchListener {
 		}
 		return true;
 	}
+
+	private void cancelLongPress(View v) {
+		if (mPendingLongPress != null) {
+			v.removeCallbacks(mPendingLongPress);
+			mPendingLongPress = null;
+		}
+	}
 }
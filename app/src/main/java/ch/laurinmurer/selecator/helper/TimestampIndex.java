@@ -0,0 +1,72 @@
+package ch.laurinmurer.selecator.helper;
+
+import java.util.function.IntSupplier;
+import java.util.function.IntToLongFunction;
+
+/**
+ * The timestamps of a list sorted newest first, to find positions by binary search instead of walking the list.
+ * It is only rebuilt on the first search after the list changed, so loading a folder in many batches does not rebuild it after each one.
+ * Not thread safe, it is meant to be used on the thread changing the list.
+ */
+public class TimestampIndex {
+	private final IntSupplier size;
+	private final IntToLongFunction timestampAt;
+	private long[] timestamps = new long[0];
+	private boolean outdated = true;
+
+	public TimestampIndex(IntSupplier size, IntToLongFunction timestampAt) {
+		this.size = size;
+		this.timestampAt = timestampAt;
+	}
+
+	/**
+	 * To be called whenever the list changed
+	 */
+	public void invalidate() {
+		outdated = true;
+	}
+
+	/**
+	 * @return the index of the first entry older than the given time, or the size of the list if there is none
+	 */
+	public int indexOfFirstOlderThan(long timestamp) {
+		return indexOfFirstOlderThan(timestamp, false);
+	}
+
+	/**
+	 * @return the index of the first entry not newer than the given time, or the size of the list if there is none
+	 */
+	public int indexOfFirstNotNewerThan(long timestamp) {
+		return indexOfFirstOlderThan(timestamp, true);
+	}
+
+	private int indexOfFirstOlderThan(long timestamp, boolean inclusive) {
+		updateIfOutdated();
+		int low = 0;
+		int high = timestamps.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			long timestampAtMiddle = timestamps[middle];
+			if (timestampAtMiddle < timestamp || (inclusive && timestampAtMiddle == timestamp)) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	private void updateIfOutdated() {
+		if (!outdated) {
+			return;
+		}
+		outdated = false;
+		int size = this.size.getAsInt();
+		if (timestamps.length != size) {
+			timestamps = new long[size];
+		}
+		for (int i = 0; i < size; i++) {
+			timestamps[i] = timestampAt.applyAsLong(i);
+		}
+	}
+}
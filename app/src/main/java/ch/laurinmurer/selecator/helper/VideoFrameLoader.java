@@ -0,0 +1,50 @@
+package ch.laurinmurer.selecator.helper;
+
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Extracts a frame of a video as thumbnail, scaled down by the decoder instead of decoding it in full resolution first.
+ */
+public class VideoFrameLoader {
+
+	private VideoFrameLoader() {
+	}
+
+	public static Optional<Bitmap> fromFile(File video, int maxWidth) {
+		try (MediaMetadataRetriever mediaMetadataRetriever = new MediaMetadataRetriever()) {
+			mediaMetadataRetriever.setDataSource(video.getPath());
+			int width = parseInt(mediaMetadataRetriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+			int height = parseInt(mediaMetadataRetriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+			int rotation = parseInt(mediaMetadataRetriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+			if (rotation % 180 != 0) {
+				//the frame is returned rotated
+				int swap = width;
+				width = height;
+				height = swap;
+			}
+			if (width <= 0 || height <= 0 || width <= maxWidth) {
+				return Optional.ofNullable(mediaMetadataRetriever.getFrameAtTime(-1, MediaMetadataRetriever.OPTION_CLOSEST_SYNC));
+			}
+			int scaledHeight = Math.max(1, (int) ((long) height * maxWidth / width));
+			return Optional.ofNullable(mediaMetadataRetriever.getScaledFrameAtTime(-1, MediaMetadataRetriever.OPTION_CLOSEST_SYNC, maxWidth, scaledHeight));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static int parseInt(String metadata) {
+		if (metadata == null) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(metadata);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package ch.laurinmurer.selecator.helper;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CrossVolumeMoverTest {
+	/**
+	 * More than one chunk, so a copy can be stopped in between
+	 */
+	private static final int SIZE = 9 * 1024 * 1024;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File journalDirectory;
+	private Path source;
+	private Path target;
+	private byte[] content;
+	private final List<Path> movedTargets = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		journalDirectory = temporaryFolder.newFolder("journal");
+		source = temporaryFolder.newFolder("source").toPath().resolve("image.jpg");
+		target = temporaryFolder.newFolder("target").toPath().resolve("image.jpg");
+		content = new byte[SIZE];
+		new Random(42).nextBytes(content);
+		Files.write(source, content);
+	}
+
+	@Test
+	public void interruptedMove_isResumed() throws IOException {
+		interruptAfterFirstChunk();
+		assertTrue(Files.exists(partFile()));
+		assertEquals(1, journalFiles().length);
+
+		new CrossVolumeMover(journalDirectory).resumeInterruptedMoves((movedSource, movedTarget) -> movedTargets.add(movedTarget));
+
+		assertFalse(Files.exists(source));
+		assertArrayEquals(content, Files.readAllBytes(target));
+		assertFalse(Files.exists(partFile()));
+		assertEquals(0, journalFiles().length);
+		assertEquals(List.of(target.toAbsolutePath()), movedTargets);
+	}
+
+	@Test
+	public void failedMove_isNotResumed() throws IOException {
+		CrossVolumeMover mover = new CrossVolumeMover(journalDirectory);
+		try {
+			mover.move(source, target, bytesCopied -> {
+				try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+					sourceChannel.truncate(bytesCopied);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			fail("The source got shorter while copying it");
+		} catch (IOException expected) {
+			//the move failed
+		}
+		assertFalse(Files.exists(partFile()));
+		assertEquals(0, journalFiles().length);
+
+		new CrossVolumeMover(journalDirectory).resumeInterruptedMoves((movedSource, movedTarget) -> movedTargets.add(movedTarget));
+
+		assertTrue(Files.exists(source));
+		assertFalse(Files.exists(target));
+		assertTrue(movedTargets.isEmpty());
+	}
+
+	@Test
+	public void moveInterruptedAfterTheRename_onlyDeletesTheSource() throws IOException {
+		interruptAfterFirstChunk();
+		//as if the copy had completed and the part file was renamed before the app was killed
+		Files.delete(partFile());
+		Files.write(target, content);
+
+		new CrossVolumeMover(journalDirectory).resumeInterruptedMoves((movedSource, movedTarget) -> movedTargets.add(movedTarget));
+
+		assertFalse(Files.exists(source));
+		assertArrayEquals(content, Files.readAllBytes(target));
+		assertEquals(0, journalFiles().length);
+		assertEquals(List.of(target.toAbsolutePath()), movedTargets);
+	}
+
+	/**
+	 * Stops the move like the app being killed would, i.e. without any cleanup
+	 */
+	private void interruptAfterFirstChunk() throws IOException {
+		try {
+			new CrossVolumeMover(journalDirectory).move(source, target, bytesCopied -> {
+				throw new Killed();
+			});
+			fail("The move should have been interrupted");
+		} catch (Killed expected) {
+			//the move was interrupted
+		}
+	}
+
+	private Path partFile() {
+		return target.resolveSibling("." + target.getFileName() + ".part");
+	}
+
+	private File[] journalFiles() {
+		File[] journalFiles = journalDirectory.listFiles();
+		return journalFiles == null ? new File[0] : journalFiles;
+	}
+
+	private static class Killed extends Error {
+	}
+}
@@ -0,0 +1,97 @@
+package ch.laurinmurer.selecator.helper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FileContentComparatorTest {
+	private static final int QUICK_CHECK_CHUNK_SIZE = 64 * 1024;
+	/**
+	 * Up to this size, the files are compared in one scan without the quick checks
+	 */
+	private static final int SINGLE_SCAN_MAX_SIZE = 2 * QUICK_CHECK_CHUNK_SIZE;
+	/**
+	 * Below, at and above the single scan limit, not a multiple of a long and, for the largest, spanning several buffers
+	 */
+	private static final int[] SIZES = {1, 7, 1001, SINGLE_SCAN_MAX_SIZE - 1, SINGLE_SCAN_MAX_SIZE, SINGLE_SCAN_MAX_SIZE + 1, SINGLE_SCAN_MAX_SIZE + 9, 3 * 1024 * 1024 + 5};
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void sameContent_matches() throws IOException {
+		for (int size : SIZES) {
+			byte[] content = randomContent(size);
+			assertFalse("size " + size, FileContentComparator.filesMismatch(write("a", content), write("b", content)));
+		}
+	}
+
+	@Test
+	public void emptyFiles_match() throws IOException {
+		assertFalse(FileContentComparator.filesMismatch(write("a", new byte[0]), write("b", new byte[0])));
+	}
+
+	@Test
+	public void differentFirstByte_mismatches() throws IOException {
+		for (int size : SIZES) {
+			assertDifferenceAtIsFound(size, 0);
+		}
+	}
+
+	@Test
+	public void differentLastByte_mismatches() throws IOException {
+		for (int size : SIZES) {
+			assertDifferenceAtIsFound(size, size - 1);
+		}
+	}
+
+	@Test
+	public void differentMiddleByte_mismatches() throws IOException {
+		for (int size : SIZES) {
+			assertDifferenceAtIsFound(size, size / 2);
+		}
+	}
+
+	@Test
+	public void differenceAroundTheQuickCheckChunks_mismatches() throws IOException {
+		int size = SINGLE_SCAN_MAX_SIZE + 9;
+		//the last byte of the head chunk, the first byte after it, the last byte before the tail chunk and the first byte of it
+		for (int index : new int[]{QUICK_CHECK_CHUNK_SIZE - 1, QUICK_CHECK_CHUNK_SIZE, size - QUICK_CHECK_CHUNK_SIZE - 1, size - QUICK_CHECK_CHUNK_SIZE}) {
+			assertDifferenceAtIsFound(size, index);
+		}
+	}
+
+	@Test
+	public void differentLength_mismatches() throws IOException {
+		for (int size : SIZES) {
+			byte[] content = randomContent(size);
+			assertTrue("size " + size, FileContentComparator.filesMismatch(write("a", content), write("b", Arrays.copyOf(content, size - 1))));
+			assertTrue("size " + size, FileContentComparator.filesMismatch(write("a", content), write("b", Arrays.copyOf(content, size + 1))));
+		}
+	}
+
+	private void assertDifferenceAtIsFound(int size, int index) throws IOException {
+		byte[] content = randomContent(size);
+		byte[] changedContent = content.clone();
+		changedContent[index]++;
+		assertTrue("size " + size + ", index " + index, FileContentComparator.filesMismatch(write("a", content), write("b", changedContent)));
+	}
+
+	private static byte[] randomContent(int size) {
+		byte[] content = new byte[size];
+		new Random(size).nextBytes(content);
+		return content;
+	}
+
+	private Path write(String name, byte[] content) throws IOException {
+		return Files.write(temporaryFolder.getRoot().toPath().resolve(name), content);
+	}
+}
@@ -0,0 +1,63 @@
+package ch.laurinmurer.selecator.helper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TimestampIndexTest {
+	/**
+	 * Newest first, like the list, with equal timestamps in the middle
+	 */
+	private final List<Long> list = new ArrayList<>(List.of(50L, 40L, 30L, 30L, 30L, 20L, 10L));
+	private final TimestampIndex index = new TimestampIndex(list::size, list::get);
+
+	@Test
+	public void equalTimestamps_olderThanSkipsAllOfThem() {
+		assertEquals(5, index.indexOfFirstOlderThan(30));
+	}
+
+	@Test
+	public void equalTimestamps_notNewerThanFindsTheFirstOfThem() {
+		assertEquals(2, index.indexOfFirstNotNewerThan(30));
+	}
+
+	@Test
+	public void timestampBetweenEntries_bothFindTheNextOlder() {
+		assertEquals(2, index.indexOfFirstOlderThan(35));
+		assertEquals(2, index.indexOfFirstNotNewerThan(35));
+	}
+
+	@Test
+	public void newerThanAll_isTheFirstIndex() {
+		assertEquals(0, index.indexOfFirstOlderThan(60));
+		assertEquals(0, index.indexOfFirstNotNewerThan(60));
+		assertEquals(0, index.indexOfFirstNotNewerThan(50));
+	}
+
+	@Test
+	public void notNewerThanAll_isPastTheEnd() {
+		assertEquals(list.size(), index.indexOfFirstOlderThan(10));
+		assertEquals(list.size(), index.indexOfFirstOlderThan(5));
+		assertEquals(list.size(), index.indexOfFirstNotNewerThan(5));
+		assertEquals(list.size() - 1, index.indexOfFirstNotNewerThan(10));
+	}
+
+	@Test
+	public void emptyList_isPastTheEnd() {
+		list.clear();
+		assertEquals(0, index.indexOfFirstOlderThan(30));
+		assertEquals(0, index.indexOfFirstNotNewerThan(30));
+	}
+
+	@Test
+	public void changedList_isOnlySeenAfterInvalidating() {
+		assertEquals(5, index.indexOfFirstOlderThan(30));
+		list.add(0, 60L);
+		assertEquals(5, index.indexOfFirstOlderThan(30));
+		index.invalidate();
+		assertEquals(6, index.indexOfFirstOlderThan(30));
+	}
+}